@@ -2,8 +2,13 @@ package xyz.sadiulhakim.advanced_project;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+import xyz.sadiulhakim.batch_commons.launcher.JobStatusController;
+import xyz.sadiulhakim.batch_commons.launcher.JobSubmissionService;
 
+// The launcher lives outside this application's package, so it is not picked up by the component scan
 @SpringBootApplication
+@Import({JobSubmissionService.class, JobStatusController.class})
 public class AdvancedProjectApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,96 @@
+package xyz.sadiulhakim.advanced_project.config;
+
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Highest and lowest score of a step with the player who scored it, shared by all threads of the step.
+ * <p>
+ * Each extremum is an immutable record of the score, its player and where it was read, swapped in with compareAndSet,
+ * so a score and its player always change together and no thread ever blocks. An offer that does not beat the current
+ * value only reads it, which is the common case once the first chunks are done. Ties go to the player read first, by
+ * team ordinal and then position in the team, so the result is the one of a single thread whatever order the threads
+ * process the teams in.
+ * <p>
+ * The values reach the step's ExecutionContext only through {@link #promote(ExecutionContext)}, once per chunk. The
+ * trackers of a multi index run append the score index to the keys, see {@link #keySuffix(int)}.
+ */
+final class ExtremumTracker {
+
+    record Extremum(double score, String player, long team, int position) {
+    }
+
+    private final AtomicReference<Extremum> max = new AtomicReference<>();
+    private final AtomicReference<Extremum> min = new AtomicReference<>();
+
+    void offerMax(double score, String player, long team, int position) {
+        offer(max, new Extremum(score, player, team, position), 1);
+    }
+
+    void offerMin(double score, String player, long team, int position) {
+        offer(min, new Extremum(score, player, team, position), -1);
+    }
+
+    // Takes over what an earlier execution of the step had promoted, a restart then continues from it. Those players
+    // were read before anything of this execution, so they win ties.
+    void restore(ExecutionContext executionContext) {
+        restore(executionContext, "");
+    }
+
+    void restore(ExecutionContext executionContext, String keySuffix) {
+        if (executionContext.containsKey(TeamAverageProcessor.MAX_SCORE + keySuffix)) {
+            offerMax(executionContext.getDouble(TeamAverageProcessor.MAX_SCORE + keySuffix),
+                    executionContext.getString(TeamAverageProcessor.MAX_PLAYER + keySuffix), -1, 0);
+        }
+        if (executionContext.containsKey(TeamAverageProcessor.MIN_SCORE + keySuffix)) {
+            offerMin(executionContext.getDouble(TeamAverageProcessor.MIN_SCORE + keySuffix),
+                    executionContext.getString(TeamAverageProcessor.MIN_PLAYER + keySuffix), -1, 0);
+        }
+    }
+
+    void promote(ExecutionContext executionContext) {
+        promote(executionContext, "");
+    }
+
+    // Synchronized so two threads finishing a chunk at once cannot leave the score of one and the player of the other
+    synchronized void promote(ExecutionContext executionContext, String keySuffix) {
+        Extremum currentMax = max.get();
+        if (currentMax != null) {
+            executionContext.putDouble(TeamAverageProcessor.MAX_SCORE + keySuffix, currentMax.score());
+            executionContext.putString(TeamAverageProcessor.MAX_PLAYER + keySuffix, currentMax.player());
+        }
+
+        Extremum currentMin = min.get();
+        if (currentMin != null) {
+            executionContext.putDouble(TeamAverageProcessor.MIN_SCORE + keySuffix, currentMin.score());
+            executionContext.putString(TeamAverageProcessor.MIN_PLAYER + keySuffix, currentMin.player());
+        }
+    }
+
+    // "max.score.3" and so on for score index 3
+    static String keySuffix(int scoreIndex) {
+        return "." + scoreIndex;
+    }
+
+    // direction 1 keeps the highest score, -1 the lowest
+    private static boolean beats(Extremum candidate, Extremum current, int direction) {
+        int comparison = Double.compare(candidate.score(), current.score()) * direction;
+        if (comparison != 0) {
+            return comparison > 0;
+        }
+        return candidate.team() != current.team()
+                ? candidate.team() < current.team()
+                : candidate.position() < current.position();
+    }
+
+    private static void offer(AtomicReference<Extremum> cell, Extremum candidate, int direction) {
+        Extremum current = cell.get();
+        while (current == null || beats(candidate, current, direction)) {
+            if (cell.compareAndSet(current, candidate)) {
+                return;
+            }
+            current = cell.get();
+        }
+    }
+}
@@ -1,61 +1,59 @@
 package xyz.sadiulhakim.advanced_project.config;
 
 import org.springframework.batch.item.*;
-import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.ResourceAwareItemReaderItemStream;
 import org.springframework.core.io.Resource;
-import xyz.sadiulhakim.advanced_project.pojo.Player;
 import xyz.sadiulhakim.advanced_project.pojo.Team;
-
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import xyz.sadiulhakim.batch_commons.file.CompressionCodec;
 
 public class MultiFileTeamReader implements ResourceAwareItemReaderItemStream<Team> {
 
-    private final FlatFileItemReader<String> lineReader;
+    private final TeamBlockParser parser;
+    private final ResourceAwareItemReaderItemStream<TeamBlockParser.Line> plainLineReader;
+    private final ResourceAwareItemReaderItemStream<TeamBlockParser.Line> compressedLineReader;
+    private ResourceAwareItemReaderItemStream<TeamBlockParser.Line> lineReader;
+
+    // Teams read so far over all files, numbers the teams in input order
+    private long teamCount;
+
+    // The line readers map their lines with parser, which builds the team
+    public MultiFileTeamReader(TeamBlockParser parser, ResourceAwareItemReaderItemStream<TeamBlockParser.Line> lineReader) {
+        this(parser, lineReader, lineReader);
+    }
 
-    public MultiFileTeamReader(FlatFileItemReader<String> lineReader) {
-        this.lineReader = lineReader;
+    // The line reader is picked per file, so plain and .gz/.zst team files can be mixed in the input folder
+    public MultiFileTeamReader(TeamBlockParser parser,
+                               ResourceAwareItemReaderItemStream<TeamBlockParser.Line> plainLineReader,
+                               ResourceAwareItemReaderItemStream<TeamBlockParser.Line> compressedLineReader) {
+        this.parser = parser;
+        this.plainLineReader = plainLineReader;
+        this.compressedLineReader = compressedLineReader;
+        this.lineReader = plainLineReader;
     }
 
     @Override
     public void setResource(Resource resource) {
+        lineReader = CompressionCodec.of(resource).isCompressed() ? compressedLineReader : plainLineReader;
         lineReader.setResource(resource);
     }
 
     @Override
     public Team read() throws Exception, UnexpectedInputException, ParseException, NonTransientResourceException {
-        Optional<Team> maybeTeam = Optional.empty();
+        TeamBlockParser.Line line;
 
-        String line;
-
-        // Instead of line by line, keep reading until the empty line
-        // At the end FlatFileItemReader returns null
+        // Instead of line by line, keep reading until the empty line. The parser collects the team name and the
+        // players, at the end the line reader returns null.
         while ((line = lineReader.read()) != null) {
-            line = line.trim();
-            if (line.isEmpty()) {
+            if (line == TeamBlockParser.Line.BLANK && parser.hasTeam()) {
 
                 // It is the end of team
-                return maybeTeam.orElse(null);
-            } else if (!line.contains(":")) {
-
-                // It is a Team name
-                maybeTeam = Optional.of(new Team(line));
-            } else {
-
-                // It is a player line
-                String[] arr = line.split(":");
-                String[] scores = arr[1].split(",");
-                List<Double> scoresDouble = Arrays.stream(scores).map(Double::parseDouble).toList();
-                Player player = new Player(arr[0], scoresDouble);
-                maybeTeam.ifPresent(team -> team.players().add(player));
+                return parser.finish(teamCount++);
             }
         }
 
-        // Here we read the current resource till an empty line. FlatFileItemReader would keep the resource open
+        // Here we read the current resource till an empty line. The line reader would keep the resource open
         // until reading is done and it would remember where did it leave off.
-        return maybeTeam.orElse(null);
+        return parser.hasTeam() ? parser.finish(teamCount++) : null;
     }
 
     @Override
@@ -0,0 +1,103 @@
+package xyz.sadiulhakim.advanced_project.config;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.WritableResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+
+// Writes the averages of every score index into a file of its own next to avg.txt, avg-3.txt for index 3, with the
+// lines avg.txt has for that index. The writer of an index is created when the index first shows up, a restart opens
+// the ones the last run had written to again.
+public class ScoreIndexAverageWriter extends ItemStreamSupport implements ItemStreamWriter<TeamAverages> {
+
+    private static final String SCORE_INDICES = "scoreIndices";
+
+    private final WritableResource averageOutput;
+    private final BiFunction<String, WritableResource, ItemStreamWriter<AverageScore>> writerFactory;
+    private final Map<Integer, ItemStreamWriter<AverageScore>> writers = new TreeMap<>();
+    private ExecutionContext executionContext;
+
+    // writerFactory makes the writer of a name and a file, the name keeps the states of the writers apart
+    public ScoreIndexAverageWriter(WritableResource averageOutput,
+                                   BiFunction<String, WritableResource, ItemStreamWriter<AverageScore>> writerFactory) {
+        this.averageOutput = averageOutput;
+        this.writerFactory = writerFactory;
+    }
+
+    // File of one score index, the index goes before the extensions so a .txt.gz output stays a .txt.gz
+    public static WritableResource forScoreIndex(Resource output, int scoreIndex) throws IOException {
+        File file = output.getFile();
+        String name = file.getName();
+        int extension = name.indexOf('.');
+        if (extension < 0) {
+            extension = name.length();
+        }
+        return new FileSystemResource(new File(file.getParentFile(),
+                name.substring(0, extension) + "-" + scoreIndex + name.substring(extension)));
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        this.executionContext = executionContext;
+        String key = getExecutionContextKey(SCORE_INDICES);
+        for (int index : TeamStatisticsProcessor.parseScoreIndices(executionContext.getString(key, ""))) {
+            writer(index);
+        }
+    }
+
+    @Override
+    public void write(Chunk<? extends TeamAverages> chunk) throws Exception {
+        Map<Integer, Chunk<AverageScore>> byIndex = new TreeMap<>();
+        for (TeamAverages item : chunk) {
+            for (int k = 0; k < item.scoreIndices().length; k++) {
+                byIndex.computeIfAbsent(item.scoreIndices()[k], index -> new Chunk<>())
+                        .add(new AverageScore(item.name(), item.averageScores()[k]));
+            }
+        }
+
+        for (Map.Entry<Integer, Chunk<AverageScore>> entry : byIndex.entrySet()) {
+            writer(entry.getKey()).write(entry.getValue());
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        for (ItemStreamWriter<AverageScore> writer : writers.values()) {
+            writer.update(executionContext);
+        }
+        executionContext.putString(getExecutionContextKey(SCORE_INDICES),
+                TeamStatisticsProcessor.formatScoreIndices(writers.keySet()));
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        for (ItemStreamWriter<AverageScore> writer : writers.values()) {
+            writer.close();
+        }
+        writers.clear();
+    }
+
+    private ItemStreamWriter<AverageScore> writer(int scoreIndex) {
+        ItemStreamWriter<AverageScore> writer = writers.get(scoreIndex);
+        if (writer == null) {
+            try {
+                writer = writerFactory.apply(getName() + "-" + scoreIndex, forScoreIndex(averageOutput, scoreIndex));
+            } catch (IOException e) {
+                throw new ItemStreamException("No file for the averages of score index " + scoreIndex, e);
+            }
+            writer.open(executionContext);
+            writers.put(scoreIndex, writer);
+        }
+        return writer;
+    }
+}
@@ -0,0 +1,100 @@
+package xyz.sadiulhakim.advanced_project.config;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.WritableResource;
+import xyz.sadiulhakim.batch_commons.file.CompressionCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+
+// Reduce step of the partitioned team average step. Concatenates the partial average files in partition (= file)
+// order into the file the single threaded step writes, and merges the extremes every partition left in its
+// ExecutionContext into this step's context, from where the promotion listener moves them to the job.
+// Equal scores go to the earlier partition, as a single reader would have seen that player first.
+// Compressed partial files are whole gzip members / zstd frames, so they are concatenated as they are too.
+public class TeamAverageMergeTasklet implements Tasklet {
+
+    private static final String PART_SUFFIX = ".part-";
+
+    private final WritableResource averageOutput;
+    private final String workerStepName;
+
+    public TeamAverageMergeTasklet(WritableResource averageOutput, String workerStepName) {
+        this.averageOutput = averageOutput;
+        this.workerStepName = workerStepName;
+    }
+
+    // Average file of one partition, next to the final output. The codec extension stays last so the part is
+    // compressed like the output.
+    public static WritableResource partOf(Resource output, int partitionIndex) throws IOException {
+        File file = output.getFile();
+        String name = file.getName();
+        int extension = CompressionCodec.of(output).isCompressed() ? name.lastIndexOf('.') : name.length();
+        String partName = name.substring(0, extension) + PART_SUFFIX + String.format("%04d", partitionIndex)
+                + name.substring(extension);
+        return new FileSystemResource(new File(file.getParentFile(), partName));
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        StepExecution stepExecution = chunkContext.getStepContext().getStepExecution();
+
+        // This job execution's partitions, in partition order
+        List<StepExecution> partitions = stepExecution.getJobExecution().getStepExecutions().stream()
+                .filter(execution -> execution.getStepName().startsWith(workerStepName + ":"))
+                .filter(execution -> execution.getExecutionContext().containsKey(TeamFilePartitioner.PARTITION_INDEX))
+                .sorted(Comparator.comparingInt(execution -> execution.getExecutionContext().getInt(TeamFilePartitioner.PARTITION_INDEX)))
+                .toList();
+
+        ExtremumTracker extremes = new ExtremumTracker();
+        for (StepExecution partition : partitions) {
+            ExecutionContext context = partition.getExecutionContext();
+            int index = context.getInt(TeamFilePartitioner.PARTITION_INDEX);
+            if (context.containsKey(TeamAverageProcessor.MAX_SCORE)) {
+                extremes.offerMax(context.getDouble(TeamAverageProcessor.MAX_SCORE),
+                        context.getString(TeamAverageProcessor.MAX_PLAYER), index, 0);
+                extremes.offerMin(context.getDouble(TeamAverageProcessor.MIN_SCORE),
+                        context.getString(TeamAverageProcessor.MIN_PLAYER), index, 0);
+            }
+        }
+        extremes.promote(stepExecution.getExecutionContext());
+
+        mergeAverages(partitions.size());
+        return RepeatStatus.FINISHED;
+    }
+
+    private void mergeAverages(int partitions) throws IOException {
+        File output = averageOutput.getFile();
+        Path tmp = output.toPath().resolveSibling(output.getName() + ".merging");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < partitions; i++) {
+                try (FileChannel in = FileChannel.open(partOf(averageOutput, i).getFile().toPath(), StandardOpenOption.READ)) {
+                    long position = 0;
+                    while (position < in.size()) {
+                        position += in.transferTo(position, in.size() - position, out);
+                    }
+                }
+            }
+        }
+        Files.move(tmp, output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        for (int i = 0; i < partitions; i++) {
+            Files.deleteIfExists(partOf(averageOutput, i).getFile().toPath());
+        }
+    }
+}
@@ -1,11 +1,10 @@
 package xyz.sadiulhakim.advanced_project.config;
 
 import org.springframework.batch.core.StepExecution;
-import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemProcessor;
-import xyz.sadiulhakim.advanced_project.pojo.Player;
 import xyz.sadiulhakim.advanced_project.pojo.Team;
 
+// Thread safe: the max/min player is tracked by an ExtremumTracker and promoted to the ExecutionContext per chunk
 public class TeamAverageProcessor implements ItemProcessor<Team, AverageScore> {
 
     public static final String MAX_SCORE = "max.score";
@@ -13,7 +12,8 @@ public class TeamAverageProcessor implements ItemProcessor<Team, AverageScore> {
     public static final String MIN_SCORE = "min.score";
     public static final String MIN_PLAYER = "min.player";
 
-    private StepExecution stepExecution;
+    private volatile StepExecution stepExecution;
+    private final ExtremumTracker extremes = new ExtremumTracker();
 
     private final int scoreIndex;
 
@@ -21,40 +21,59 @@ public class TeamAverageProcessor implements ItemProcessor<Team, AverageScore> {
         this.scoreIndex = scoreIndex;
     }
 
-    // We have to set MAX_SCORE, MAX_PLAYER, MIN_SCORE, MIN_PLAYER, and we need to return the average score.
+    // We have to track MAX_SCORE, MAX_PLAYER, MIN_SCORE, MIN_PLAYER, and we need to return the average score.
     @Override
     public AverageScore process(Team team) throws Exception {
 
         if (stepExecution == null)
             throw new RuntimeException("StepExecution is not set!");
 
-        ExecutionContext executionContext = stepExecution.getExecutionContext();
-        Double lastMaxScore = executionContext.containsKey(MAX_SCORE) ? executionContext.getDouble(MAX_SCORE) : null;
-        Double lastMinScore = executionContext.containsKey(MIN_SCORE) ? executionContext.getDouble(MIN_SCORE) : null;
-
+        // The team's own extremes first, the shared tracker is offered only two values per team
+        int players = team.playerCount();
         double sum = 0;
         int count = 0;
-        for (Player player : team.players()) {
-            Double score = player.scores().get(scoreIndex);
+        int maxPosition = -1;
+        int minPosition = -1;
+        double maxScore = 0;
+        double minScore = 0;
+        for (int i = 0; i < players; i++) {
+            double score = team.score(i, scoreIndex);
 
-            if (lastMaxScore == null || score > lastMaxScore) {
-                executionContext.put(MAX_SCORE, score);
-                executionContext.put(MAX_PLAYER, player.name());
+            // Strict comparisons, the first of equal scores in the team is kept
+            if (maxPosition < 0 || score > maxScore) {
+                maxScore = score;
+                maxPosition = i;
             }
 
-            if (lastMinScore == null || score < lastMinScore) {
-                executionContext.put(MIN_SCORE, score);
-                executionContext.put(MIN_PLAYER, player.name());
+            if (minPosition < 0 || score < minScore) {
+                minScore = score;
+                minPosition = i;
             }
 
             sum += score;
             count++;
         }
 
+        if (count > 0) {
+            extremes.offerMax(maxScore, team.playerName(maxPosition), team.ordinal(), maxPosition);
+            extremes.offerMin(minScore, team.playerName(minPosition), team.ordinal(), minPosition);
+        }
+
         return new AverageScore(team.name(), (sum / count));
     }
 
     public void setStepExecution(StepExecution stepExecution) {
+        if (stepExecution != null) {
+            extremes.restore(stepExecution.getExecutionContext());
+        }
         this.stepExecution = stepExecution;
     }
+
+    // Called once per chunk, the extremes seen so far go into the step's ExecutionContext
+    public void promoteExtremes() {
+        StepExecution current = stepExecution;
+        if (current != null) {
+            extremes.promote(current.getExecutionContext());
+        }
+    }
 }
@@ -0,0 +1,9 @@
+package xyz.sadiulhakim.advanced_project.config;
+
+// Averages of one team for several score indices, averageScores[i] is the average of score index scoreIndices[i]
+public record TeamAverages(
+        String name,
+        int[] scoreIndices,
+        double[] averageScores
+) {
+}
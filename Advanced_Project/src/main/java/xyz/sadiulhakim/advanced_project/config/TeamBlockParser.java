@@ -0,0 +1,185 @@
+package xyz.sadiulhakim.advanced_project.config;
+
+import xyz.sadiulhakim.advanced_project.pojo.Team;
+import xyz.sadiulhakim.batch_commons.file.CharSequenceLineMapper;
+
+import java.util.Arrays;
+
+/**
+ * Parses the team block format into {@link Team}s without a String per line or a boxed Double per score.
+ * <pre>
+ * Team name
+ * Player:9.80,7.40,6.70
+ * Player:9.40,8.80
+ * (blank line)
+ * </pre>
+ * The line readers already find the lines in the (mapped or decompressed) file bytes and hand them over as a view of
+ * those bytes. This mapper parses such a line in place into the team being built: the player name is the only String
+ * created, the scores go straight into a growing double[]. What it returns only tells the {@link MultiFileTeamReader}
+ * which kind of line it was; {@link #finish(long)} hands over the team once its block has ended.
+ * <p>
+ * One parser per reader, it holds the team being read.
+ */
+public class TeamBlockParser implements CharSequenceLineMapper<TeamBlockParser.Line> {
+
+    public enum Line {
+        TEAM, PLAYER, BLANK
+    }
+
+    // Powers of ten that are exactly representable as double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Up to 15 decimal digits always fit in the 53-bit mantissa of a double
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    // The team being built, reused from team to team, only trimmed copies are handed over
+    private String teamName;
+    private String[] players = new String[16];
+    private int[] scoreStarts = new int[17];
+    private double[] scores = new double[128];
+    private int playerCount;
+    private int scoreCount;
+
+    // Non ASCII lines come as a String
+    @Override
+    public Line mapLine(String line, int lineNumber) throws Exception {
+        return mapLine((CharSequence) line, lineNumber);
+    }
+
+    @Override
+    public Line mapLine(CharSequence line, int lineNumber) throws Exception {
+        int start = 0;
+        int end = line.length();
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        if (start == end) {
+            return Line.BLANK;
+        }
+
+        int colon = indexOf(line, ':', start, end);
+        if (colon < 0) {
+            // A team name starts a new team
+            teamName = line.subSequence(start, end).toString();
+            playerCount = 0;
+            scoreCount = 0;
+            return Line.TEAM;
+        }
+
+        // Players before the first team name belong to no team
+        if (teamName != null) {
+            addPlayer(line, start, colon, end);
+        }
+        return Line.PLAYER;
+    }
+
+    public boolean hasTeam() {
+        return teamName != null;
+    }
+
+    // The team read so far, the parser is empty afterward
+    public Team finish(long ordinal) {
+        Team team = new Team(teamName, ordinal, Arrays.copyOf(players, playerCount),
+                Arrays.copyOf(scores, scoreCount), Arrays.copyOf(scoreStarts, playerCount + 1));
+        teamName = null;
+        playerCount = 0;
+        scoreCount = 0;
+        return team;
+    }
+
+    // Scores run from the colon to the next colon or the end of the line, empty scores at the end are ignored
+    private void addPlayer(CharSequence line, int start, int colon, int end) {
+        if (playerCount == players.length) {
+            players = Arrays.copyOf(players, playerCount << 1);
+            scoreStarts = Arrays.copyOf(scoreStarts, (playerCount << 1) + 1);
+        }
+        players[playerCount] = line.subSequence(start, colon).toString();
+        scoreStarts[playerCount] = scoreCount;
+
+        int scoresEnd = indexOf(line, ':', colon + 1, end);
+        if (scoresEnd < 0) {
+            scoresEnd = end;
+        }
+        int lastScoreEnd = scoresEnd;
+        while (lastScoreEnd > colon + 1 && line.charAt(lastScoreEnd - 1) == ',') {
+            lastScoreEnd--;
+        }
+
+        int from = colon + 1;
+        while (from < lastScoreEnd) {
+            int to = indexOf(line, ',', from, lastScoreEnd);
+            if (to < 0) {
+                to = lastScoreEnd;
+            }
+            if (scoreCount == scores.length) {
+                scores = Arrays.copyOf(scores, scoreCount << 1);
+            }
+            scores[scoreCount++] = parseDouble(line, from, to);
+            from = to + 1;
+        }
+
+        playerCount++;
+        scoreStarts[playerCount] = scoreCount;
+    }
+
+    private static int indexOf(CharSequence line, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Parses plain decimals like "9.80" without allocating. Dividing an exact mantissa by an exact power of ten
+    // is correctly rounded, so the result is identical to Double.parseDouble. Anything else (exponents, NaN,
+    // very long numbers) falls back to Double.parseDouble.
+    static double parseDouble(CharSequence line, int start, int end) {
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fraction) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+
+        if (i != end || digits == 0 || digits > MAX_EXACT_DIGITS || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(line.subSequence(start, end).toString());
+        }
+
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+}
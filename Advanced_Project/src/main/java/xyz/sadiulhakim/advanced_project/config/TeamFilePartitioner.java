@@ -0,0 +1,84 @@
+package xyz.sadiulhakim.advanced_project.config;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Splits the team files into at most gridSize buckets of about the same number of bytes. The files are taken in the
+// order MultiResourceItemReader reads them (by file name) and every bucket is a run of consecutive files, so the
+// partition outputs put one after the other in partition order are the output of a single reader over all files.
+public class TeamFilePartitioner implements Partitioner {
+
+    public static final String PARTITION_INDEX = "partitionIndex";
+    public static final String TEAM_FILES = "teamFiles";
+    private static final String PARTITION_NAME_PREFIX = "teamFilePartition-";
+
+    private final Resource[] resources;
+
+    public TeamFilePartitioner(Resource[] resources) {
+        this.resources = resources;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Resource[] sorted = Arrays.copyOf(resources, resources.length);
+        Arrays.sort(sorted, Comparator.comparing(Resource::getFilename));
+
+        long[] sizes = new long[sorted.length];
+        long total = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            sizes[i] = contentLength(sorted[i]);
+            total += sizes[i];
+        }
+
+        // A file goes to the bucket its middle byte falls in, buckets left empty by a large file are dropped
+        List<List<String>> buckets = new ArrayList<>();
+        int lastBucket = -1;
+        long before = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            int bucket = total == 0 ? 0 : (int) Math.min(gridSize - 1, (before + sizes[i] / 2) * gridSize / total);
+            if (bucket != lastBucket) {
+                buckets.add(new ArrayList<>());
+                lastBucket = bucket;
+            }
+            buckets.getLast().add(url(sorted[i]));
+            before += sizes[i];
+        }
+
+        Map<String, ExecutionContext> partitionMap = new LinkedHashMap<>(buckets.size());
+        for (int i = 0; i < buckets.size(); i++) {
+            ExecutionContext executionContext = new ExecutionContext();
+            executionContext.putInt(PARTITION_INDEX, i);
+            executionContext.put(TEAM_FILES, buckets.get(i));
+
+            // Zero padded so the partitions sort in file order
+            partitionMap.put(PARTITION_NAME_PREFIX + String.format("%04d", i), executionContext);
+        }
+        return partitionMap;
+    }
+
+    private static long contentLength(Resource resource) {
+        try {
+            return resource.contentLength();
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not read the size of " + resource, e);
+        }
+    }
+
+    private static String url(Resource resource) {
+        try {
+            return resource.getURL().toString();
+        } catch (IOException e) {
+            throw new ItemStreamException("Team file " + resource + " has no URL", e);
+        }
+    }
+}
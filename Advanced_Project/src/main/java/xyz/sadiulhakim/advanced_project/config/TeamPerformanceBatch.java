@@ -6,47 +6,64 @@ import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.builder.FlowBuilder;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.job.flow.support.SimpleFlow;
-import org.springframework.batch.core.launch.JobLauncher;
-import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
 import org.springframework.batch.core.listener.ExecutionContextPromotionListener;
 import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
 import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.core.step.tasklet.CommandRunner;
 import org.springframework.batch.core.step.tasklet.JvmCommandRunner;
 import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemProcessor;
-import org.springframework.batch.item.ItemReader;
-import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.file.FlatFileFooterCallback;
 import org.springframework.batch.item.file.FlatFileHeaderCallback;
-import org.springframework.batch.item.file.FlatFileItemReader;
-import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.batch.item.file.builder.MultiResourceItemReaderBuilder;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.mapping.RecordFieldSetMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.file.transform.FieldExtractor;
+import org.springframework.batch.item.support.builder.SynchronizedItemStreamReaderBuilder;
+import org.springframework.batch.item.support.builder.SynchronizedItemStreamWriterBuilder;
 import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
 import org.springframework.core.io.WritableResource;
 import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 import xyz.sadiulhakim.advanced_project.pojo.Team;
 import xyz.sadiulhakim.advanced_project.pojo.TeamPerformance;
+import xyz.sadiulhakim.batch_commons.file.CompressedItemWriter;
+import xyz.sadiulhakim.batch_commons.file.CompressedLineItemReader;
+import xyz.sadiulhakim.batch_commons.file.CompressionCodec;
+import xyz.sadiulhakim.batch_commons.file.MappedLineItemReader;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Files;
+import java.util.List;
 
 @Configuration
 @EnableScheduling
 @EnableBatchProcessing
 public class TeamPerformanceBatch {
 
-    @Value("classpath:input/*.txt")
+    // *.txt* also takes the compressed team files (.txt.gz, .txt.zst)
+    @Value("classpath:input/*.txt*")
     private Resource[] inputFolderPath;
 
     @Value("file:d:\\Hakim_Code\\learn_batch\\staticFiles\\advanced\\output\\avg.txt")
@@ -61,17 +78,18 @@ public class TeamPerformanceBatch {
     @Value("file:D:\\Hakim_Code\\learn_batch\\staticFiles\\advanced\\output")
     private WritableResource resultedPath;
 
-    @Bean
-    @Qualifier("asyncJobLauncher")
-    JobLauncher asyncJobLauncher(JobRepository jobRepository) {
-        SimpleAsyncTaskExecutor simpleAsyncTaskExecutor = new SimpleAsyncTaskExecutor();
-        simpleAsyncTaskExecutor.setVirtualThreads(true);
+    // Threads teamAverageStep processes chunks on, 1 keeps it single threaded and the output in input order.
+    // Spring Batch runs at most 4 chunks at once by default, more threads than that are not used.
+    @Value("${team.average.threads:1}")
+    private int teamAverageThreads;
 
-        TaskExecutorJobLauncher jobLauncher = new TaskExecutorJobLauncher();
-        jobLauncher.setJobRepository(jobRepository);
-        jobLauncher.setTaskExecutor(simpleAsyncTaskExecutor);
-        return jobLauncher;
-    }
+    // Partitions of size balanced runs of team files teamAverageStep is split into, 1 keeps the single step.
+    // Every partition writes its own part of avg.txt and keeps its own extremes, teamAverageMergeStep puts them together.
+    @Value("${team.average.partition.grid-size:1}")
+    private int teamAveragePartitions;
+
+    // Lines scoreIndexPerformanceTasklet writes at once
+    private static final int PERFORMANCE_CHUNK_SIZE = 1000;
 
     @Bean
     @StepScope
@@ -82,33 +100,71 @@ public class TeamPerformanceBatch {
 
     @Bean
     @Qualifier("teamReader")
-    ItemReader<Team> teamReader() {
+    ItemStreamReader<Team> teamReader() {
+        // Which teams are done is not a position in the files once several threads read them
+        return teamReader("teamReader", inputFolderPath, teamAverageThreads == 1);
+    }
 
-        // Takes a file from FlatFileItemReader reads sequentially.
-        // It keeps the current resource open until reading is done, and it also remembers where it left off.
-        FlatFileItemReader<String> lineReader = new FlatFileItemReaderBuilder<String>()
-                .name("lineReader")
-                .lineMapper((line, lineNumber) -> line) // Return the same line so that we can process in ResourceAwareItemReaderItemStream
-                .build();
+    // Reads the team files of one partition, see TeamFilePartitioner
+    @Bean
+    @StepScope
+    @Qualifier("partitionTeamReader")
+    ItemStreamReader<Team> partitionTeamReader(@Value("#{stepExecutionContext['teamFiles']}") List<String> teamFiles) {
+        Resource[] resources = teamFiles.stream().map(UrlResource::from).toArray(Resource[]::new);
+        return teamReader("partitionTeamReader", resources, true);
+    }
 
-        // Takes file from MultiFileTeamReader one by one and passes it to FlatFileItemReader.
-        MultiFileTeamReader reader = new MultiFileTeamReader(lineReader);
+    private static ItemStreamReader<Team> teamReader(String name, Resource[] resources, boolean saveState) {
+
+        // Parses every line in place into the team being read, MultiFileTeamReader takes the team at its blank line
+        TeamBlockParser parser = new TeamBlockParser();
+
+        // Takes a file from MultiFileTeamReader and reads it sequentially through a memory mapping.
+        // It keeps the current resource open until reading is done, and it also remembers (byte offset) where it left off.
+        MappedLineItemReader<TeamBlockParser.Line> lineReader = new MappedLineItemReader<>(parser);
+        lineReader.setName("lineReader");
+
+        // Compressed team files are streamed through their codec instead
+        CompressedLineItemReader<TeamBlockParser.Line> compressedLineReader = new CompressedLineItemReader<>(parser);
+        compressedLineReader.setName("compressedLineReader");
+
+        // Takes file from MultiResourceItemReader one by one and passes it to the line reader.
+        MultiFileTeamReader reader = new MultiFileTeamReader(parser, lineReader, compressedLineReader);
 
         // MultiResourceItemReaderBuilder takes multiple files as input then delegates files to MultiFileTeamReader
         // one by one.
         return new MultiResourceItemReaderBuilder<Team>()
-                .name("teamReader")
-                .resources(inputFolderPath)
+                .name(name)
+                .resources(resources)
                 .delegate(reader)
+                .saveState(saveState)
                 .build();
     }
 
     @Bean
     @Qualifier("teamAverageWriter")
-    ItemWriter<AverageScore> teamAverageWriter() {
+    ItemStreamWriter<AverageScore> teamAverageWriter() {
+        return averageWriter("teamAverageWriter", avgOutputFile);
+    }
+
+    // Writes the part of avg.txt of one partition
+    @Bean
+    @StepScope
+    @Qualifier("partitionTeamAverageWriter")
+    ItemStreamWriter<AverageScore> partitionTeamAverageWriter(
+            @Value("#{stepExecutionContext['partitionIndex']}") int partitionIndex) throws IOException {
+        return averageWriter("partitionTeamAverageWriter", TeamAverageMergeTasklet.partOf(avgOutputFile, partitionIndex));
+    }
+
+    private static ItemStreamWriter<AverageScore> averageWriter(String name, WritableResource resource) {
+        if (CompressionCodec.of(resource).isCompressed()) {
+            return compressedWriter(name, resource, item -> new Object[]{item.name(), item.averageScore()},
+                    null, null);
+        }
+
         return new FlatFileItemWriterBuilder<AverageScore>()
-                .name("teamAverageWriter")
-                .resource(avgOutputFile)
+                .name(name)
+                .resource(resource)
                 .delimited()
                 .delimiter(",")
 //                .names("name","averageScore")
@@ -116,6 +172,23 @@ public class TeamPerformanceBatch {
                 .build();
     }
 
+    // Same delimited lines as the FlatFileItemWriters here, written into a .gz or .zst file
+    private static <T> CompressedItemWriter<T> compressedWriter(String name, WritableResource resource,
+                                                                FieldExtractor<T> fieldExtractor,
+                                                                FlatFileHeaderCallback headerCallback,
+                                                                FlatFileFooterCallback footerCallback) {
+        DelimitedLineAggregator<T> lineAggregator = new DelimitedLineAggregator<>();
+        lineAggregator.setDelimiter(",");
+        lineAggregator.setFieldExtractor(fieldExtractor);
+
+        CompressedItemWriter<T> writer = new CompressedItemWriter<>(lineAggregator);
+        writer.setName(name);
+        writer.setResource(resource);
+        writer.setHeaderCallback(headerCallback);
+        writer.setFooterCallback(footerCallback);
+        return writer;
+    }
+
     @Bean
     @Qualifier("playerInfoPromoter")
     ExecutionContextPromotionListener playerInfoPromoter() {
@@ -131,18 +204,105 @@ public class TeamPerformanceBatch {
         return promotionListener;
     }
 
+    // A bean so the context shuts its threads down with it. Not a default candidate, so Boot still creates its own
+    // applicationTaskExecutor, which backs off when it finds any other Executor.
+    @Bean(defaultCandidate = false)
+    @Qualifier("teamAverageTaskExecutor")
+    ThreadPoolTaskExecutor teamAverageTaskExecutor() {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(Math.max(teamAverageThreads, 1));
+        taskExecutor.setThreadFactory(Thread.ofVirtual().factory());
+        return taskExecutor;
+    }
+
     @Bean
     @Qualifier("teamAverageStep")
     Step teamAverageStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
-                         @Qualifier("teamReader") ItemReader<Team> teamReader,
+                         @Qualifier("teamReader") ItemStreamReader<Team> teamReader,
                          @Qualifier("teamAverageProcessor") TeamAverageProcessor teamAverageProcessor,
-                         @Qualifier("teamAverageWriter") ItemWriter<AverageScore> teamAverageWriter,
-                         @Qualifier("playerInfoPromoter") ExecutionContextPromotionListener promotionListener) {
-        return new StepBuilder("teamAverageStep", jobRepository)
-                .<Team, AverageScore>chunk(5, transactionManager)
-                .reader(teamReader)
+                         @Qualifier("teamAverageWriter") ItemStreamWriter<AverageScore> teamAverageWriter,
+                         @Qualifier("playerInfoPromoter") ExecutionContextPromotionListener promotionListener,
+                         @Qualifier("teamAverageTaskExecutor") ThreadPoolTaskExecutor teamAverageTaskExecutor) {
+        SimpleStepBuilder<Team, AverageScore> builder = teamAverageStep("teamAverageStep", jobRepository, transactionManager,
+                teamReader, teamAverageProcessor, teamAverageWriter,
+                teamAverageThreads > 1 ? teamAverageTaskExecutor : null);
+        builder.listener(promotionListener);
+        return builder.build();
+    }
+
+    // One partition of teamAverageStep. Its extremes stay in its own ExecutionContext, the partitions would overwrite
+    // each other in the job's, teamAverageMergeStep promotes them.
+    @Bean
+    @Qualifier("teamAverageWorkerStep")
+    Step teamAverageWorkerStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
+                               @Qualifier("partitionTeamReader") ItemStreamReader<Team> partitionTeamReader,
+                               @Qualifier("teamAverageProcessor") TeamAverageProcessor teamAverageProcessor,
+                               @Qualifier("partitionTeamAverageWriter") ItemStreamWriter<AverageScore> partitionTeamAverageWriter) {
+        return teamAverageStep("teamAverageWorkerStep", jobRepository, transactionManager, partitionTeamReader,
+                teamAverageProcessor, partitionTeamAverageWriter, null).build();
+    }
+
+    @Bean
+    @Qualifier("partitionedTeamAverageStep")
+    Step partitionedTeamAverageStep(JobRepository jobRepository,
+                                    @Qualifier("teamAverageWorkerStep") Step teamAverageWorkerStep) {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor();
+        taskExecutor.setVirtualThreads(true);
+
+        return new StepBuilder("partitionedTeamAverageStep", jobRepository)
+                .partitioner("teamAverageWorkerStep", new TeamFilePartitioner(inputFolderPath))
+                .step(teamAverageWorkerStep)
+                .gridSize(teamAveragePartitions)
+                .taskExecutor(taskExecutor)
+                .allowStartIfComplete(true)
+                .build();
+    }
+
+    @Bean
+    @Qualifier("teamAverageMergeStep")
+    Step teamAverageMergeStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
+                              @Qualifier("playerInfoPromoter") ExecutionContextPromotionListener promotionListener) {
+        return new StepBuilder("teamAverageMergeStep", jobRepository)
+                .tasklet(new TeamAverageMergeTasklet(avgOutputFile, "teamAverageWorkerStep"), transactionManager)
+                .listener(promotionListener)
+                .allowStartIfComplete(true)
+                .build();
+    }
+
+    // Everything of teamAverageStep but the promotion of the extremes to the job, without a taskExecutor it runs single
+    // threaded
+    private static SimpleStepBuilder<Team, AverageScore> teamAverageStep(String name, JobRepository jobRepository,
+                                                                         PlatformTransactionManager transactionManager,
+                                                                         ItemStreamReader<Team> teamReader,
+                                                                         TeamAverageProcessor teamAverageProcessor,
+                                                                         ItemStreamWriter<AverageScore> teamAverageWriter,
+                                                                         TaskExecutor taskExecutor) {
+        SimpleStepBuilder<Team, AverageScore> builder = new StepBuilder(name, jobRepository)
+                .<Team, AverageScore>chunk(5, transactionManager);
+
+        if (taskExecutor != null) {
+            // The processor is thread safe, the file reader and writer are not
+            builder.reader(new SynchronizedItemStreamReaderBuilder<Team>()
+                            .delegate(teamReader)
+                            .build())
+                    .writer(new SynchronizedItemStreamWriterBuilder<AverageScore>()
+                            .delegate(teamAverageWriter)
+                            .build())
+                    .taskExecutor(taskExecutor);
+        } else {
+            builder.reader(teamReader)
+                    .writer(teamAverageWriter);
+        }
+
+        return builder
                 .processor(teamAverageProcessor)
-                .writer(teamAverageWriter)
+                // Still inside the chunk's transaction, the extremes are saved together with the chunk
+                .listener(new ItemWriteListener<AverageScore>() {
+                    @Override
+                    public void afterWrite(Chunk<? extends AverageScore> items) {
+                        teamAverageProcessor.promoteExtremes();
+                    }
+                })
                 .listener(new StepExecutionListener() {
                     @Override
                     public void beforeStep(StepExecution stepExecution) {
@@ -152,11 +312,10 @@ public class TeamPerformanceBatch {
                     @Override
                     public ExitStatus afterStep(StepExecution stepExecution) {
                         teamAverageProcessor.setStepExecution(null);
-                        System.out.println("Done teamAverageStep Step.");
+                        System.out.println("Done " + name + " Step.");
                         return StepExecutionListener.super.afterStep(stepExecution);
                     }
                 })
-                .listener(promotionListener)
                 .allowStartIfComplete(true)
                 .faultTolerant()
                 .skip(IndexOutOfBoundsException.class)
@@ -178,23 +337,32 @@ public class TeamPerformanceBatch {
                         System.out.printf("Item %s skipped while processing, Exception : %s", item.name(), t.getMessage());
 
                     }
-                })
-                .build();
+                });
     }
 
     //+---------------------------------------------+--------------------------------------------+
 
     // Do not make this a @Bean. Because we would use this in two steps, and they would be run in parallel there might be
     // Threading issue.
-    ItemReader<AverageScore> averageScoreReader() {
-        return new FlatFileItemReaderBuilder<AverageScore>()
-                .name("averageScoreReader")
-                .resource(avgOutputFile)
-                .delimited()
-                .delimiter(",")
-                .names("name", "averageScore")
-                .targetType(AverageScore.class)
-                .build();
+    private static ItemStreamReader<AverageScore> averageScoreReader(Resource avgOutputFile) {
+        DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer(",");
+        tokenizer.setNames("name", "averageScore");
+
+        DefaultLineMapper<AverageScore> lineMapper = new DefaultLineMapper<>();
+        lineMapper.setLineTokenizer(tokenizer);
+        lineMapper.setFieldSetMapper(new RecordFieldSetMapper<>(AverageScore.class));
+
+        if (CompressionCodec.of(avgOutputFile).isCompressed()) {
+            CompressedLineItemReader<AverageScore> reader = new CompressedLineItemReader<>(lineMapper);
+            reader.setName("averageScoreReader");
+            reader.setResource(avgOutputFile);
+            return reader;
+        }
+
+        MappedLineItemReader<AverageScore> reader = new MappedLineItemReader<>(lineMapper);
+        reader.setName("averageScoreReader");
+        reader.setResource(avgOutputFile);
+        return reader;
     }
 
     @Bean
@@ -240,7 +408,7 @@ public class TeamPerformanceBatch {
         return reader -> writeHeader(reader, minPlayer, minScore);
     }
 
-    private void writeHeader(Writer writer, String name, double score) {
+    private static void writeHeader(Writer writer, String name, double score) {
         try {
             writer.write("+-------------------------------------+--------------------------------+\n");
             writer.write("Team performance below is calculated against " + score + " which was scored by " + name + "\n");
@@ -257,25 +425,9 @@ public class TeamPerformanceBatch {
                                 @Qualifier("maxHeaderWriter") FlatFileHeaderCallback maxHeaderWriter) {
         return new StepBuilder("teamMaxPerformanceStep", jobRepository)
                 .<AverageScore, TeamPerformance>chunk(5, transactionManager)
-                .reader(averageScoreReader())
+                .reader(averageScoreReader(avgOutputFile))
                 .processor(maxRatioPerformanceProcessor)
-                .writer(new FlatFileItemWriterBuilder<TeamPerformance>()
-                        .name("teamMaxPerformanceWriter")
-                        .resource(maxOutputFile)
-                        .delimited()
-                        .delimiter(",")
-                        .fieldExtractor(item -> new Object[]{item.name(), item.performance()})
-                        .headerCallback(maxHeaderWriter)
-                        .footerCallback(writer -> {
-                            try {
-                                writer.write("\n");
-                                writer.write("Processed By Hakim!\n");
-                            } catch (Exception e) {
-                                throw new RuntimeException(e);
-                            }
-                        })
-                        .build()
-                )
+                .writer(performanceWriter("teamMaxPerformanceWriter", maxOutputFile, maxHeaderWriter))
                 .build();
     }
 
@@ -286,25 +438,186 @@ public class TeamPerformanceBatch {
                                 @Qualifier("minHeaderWriter") FlatFileHeaderCallback minHeaderWriter) {
         return new StepBuilder("teamMinPerformanceStep", jobRepository)
                 .<AverageScore, TeamPerformance>chunk(5, transactionManager)
-                .reader(averageScoreReader())
+                .reader(averageScoreReader(avgOutputFile))
                 .processor(minRatioPerformanceProcessor)
-                .writer(new FlatFileItemWriterBuilder<TeamPerformance>()
-                        .name("teamMinPerformanceWriter")
-                        .resource(minOutputFile)
-                        .delimited()
-                        .delimiter(",")
-                        .fieldExtractor(item -> new Object[]{item.name(), item.performance()})
-                        .headerCallback(minHeaderWriter)
-                        .footerCallback(writer -> {
-                            try {
-                                writer.write("\n");
-                                writer.write("Processed By Hakim!\n");
-                            } catch (Exception e) {
-                                throw new RuntimeException(e);
+                .writer(performanceWriter("teamMinPerformanceWriter", minOutputFile, minHeaderWriter))
+                .build();
+    }
+
+    private static ItemStreamWriter<TeamPerformance> performanceWriter(String name, WritableResource resource,
+                                                                 FlatFileHeaderCallback headerCallback) {
+        FieldExtractor<TeamPerformance> fieldExtractor = item -> new Object[]{item.name(), item.performance()};
+        FlatFileFooterCallback footerCallback = writer -> {
+            try {
+                writer.write("\n");
+                writer.write("Processed By Hakim!\n");
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        };
+
+        if (CompressionCodec.of(resource).isCompressed()) {
+            return compressedWriter(name, resource, fieldExtractor, headerCallback, footerCallback);
+        }
+
+        return new FlatFileItemWriterBuilder<TeamPerformance>()
+                .name(name)
+                .resource(resource)
+                .delimited()
+                .delimiter(",")
+                .fieldExtractor(fieldExtractor)
+                .headerCallback(headerCallback)
+                .footerCallback(footerCallback)
+                .build();
+    }
+
+    //+----------------------------------+------------------------------+
+
+    // teamStatisticsJob: the averages, extremes and performances of several score indices from one read of the team
+    // files. The outputs are those of averageScoreCalculatorJob with the index in the file name, avg-3.txt, max-3.txt
+    // and min-3.txt for index 3.
+
+    @Bean
+    @StepScope
+    @Qualifier("teamStatisticsProcessor")
+    TeamStatisticsProcessor teamStatisticsProcessor(@Value("#{jobParameters['scoreIndices']}") String scoreIndices) {
+        // No scoreIndices parameter takes every index
+        return new TeamStatisticsProcessor(scoreIndices == null ? null : TeamStatisticsProcessor.parseScoreIndices(scoreIndices));
+    }
+
+    @Bean
+    @Qualifier("statisticsTeamReader")
+    ItemStreamReader<Team> statisticsTeamReader() {
+        return teamReader("statisticsTeamReader", inputFolderPath, true);
+    }
+
+    @Bean
+    @Qualifier("teamStatisticsWriter")
+    ItemStreamWriter<TeamAverages> teamStatisticsWriter() {
+        ScoreIndexAverageWriter writer = new ScoreIndexAverageWriter(avgOutputFile, TeamPerformanceBatch::averageWriter);
+        writer.setName("teamStatisticsWriter");
+        return writer;
+    }
+
+    @Bean
+    @Qualifier("teamStatisticsStep")
+    Step teamStatisticsStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
+                            @Qualifier("statisticsTeamReader") ItemStreamReader<Team> statisticsTeamReader,
+                            @Qualifier("teamStatisticsProcessor") TeamStatisticsProcessor teamStatisticsProcessor,
+                            @Qualifier("teamStatisticsWriter") ItemStreamWriter<TeamAverages> teamStatisticsWriter) {
+        return new StepBuilder("teamStatisticsStep", jobRepository)
+                .<Team, TeamAverages>chunk(5, transactionManager)
+                .reader(statisticsTeamReader)
+                .processor(teamStatisticsProcessor)
+                .writer(teamStatisticsWriter)
+                // Still inside the chunk's transaction, the extremes are saved together with the chunk
+                .listener(new ItemWriteListener<TeamAverages>() {
+                    @Override
+                    public void afterWrite(Chunk<? extends TeamAverages> items) {
+                        teamStatisticsProcessor.promoteExtremes();
+                    }
+                })
+                .listener(new StepExecutionListener() {
+                    @Override
+                    public void beforeStep(StepExecution stepExecution) {
+                        teamStatisticsProcessor.setStepExecution(stepExecution);
+                    }
+
+                    // The keys depend on the indices seen, too many for an ExecutionContextPromotionListener
+                    @Override
+                    public ExitStatus afterStep(StepExecution stepExecution) {
+                        teamStatisticsProcessor.setStepExecution(null);
+                        ExecutionContext stepContext = stepExecution.getExecutionContext();
+                        ExecutionContext jobContext = stepExecution.getJobExecution().getExecutionContext();
+                        String scoreIndices = stepContext.getString(TeamStatisticsProcessor.SCORE_INDICES, "");
+                        jobContext.putString(TeamStatisticsProcessor.SCORE_INDICES, scoreIndices);
+                        for (int index : TeamStatisticsProcessor.parseScoreIndices(scoreIndices)) {
+                            String suffix = ExtremumTracker.keySuffix(index);
+                            for (String key : new String[]{TeamAverageProcessor.MAX_SCORE, TeamAverageProcessor.MAX_PLAYER,
+                                    TeamAverageProcessor.MIN_SCORE, TeamAverageProcessor.MIN_PLAYER}) {
+                                jobContext.put(key + suffix, stepContext.get(key + suffix));
                             }
-                        })
-                        .build()
-                )
+                        }
+                        System.out.println("Done teamStatisticsStep Step.");
+                        return StepExecutionListener.super.afterStep(stepExecution);
+                    }
+                })
+                .allowStartIfComplete(true)
+                .build();
+    }
+
+    // teamMaxPerformanceStep and teamMinPerformanceStep for every index, both files of an index from one read of its
+    // averages
+    @Bean
+    @StepScope
+    @Qualifier("scoreIndexPerformanceTasklet")
+    Tasklet scoreIndexPerformanceTasklet(@Value("#{jobExecutionContext['score.indices']}") String scoreIndices) {
+        return (contribution, chunkContext) -> {
+            ExecutionContext jobContext = chunkContext.getStepContext().getStepExecution().getJobExecution()
+                    .getExecutionContext();
+            for (int index : TeamStatisticsProcessor.parseScoreIndices(scoreIndices)) {
+                writePerformances(contribution, jobContext, index);
+            }
+            return RepeatStatus.FINISHED;
+        };
+    }
+
+    private void writePerformances(StepContribution contribution, ExecutionContext jobContext, int scoreIndex)
+            throws Exception {
+        String suffix = ExtremumTracker.keySuffix(scoreIndex);
+        double maxScore = jobContext.getDouble(TeamAverageProcessor.MAX_SCORE + suffix);
+        String maxPlayer = jobContext.getString(TeamAverageProcessor.MAX_PLAYER + suffix);
+        double minScore = jobContext.getDouble(TeamAverageProcessor.MIN_SCORE + suffix);
+        String minPlayer = jobContext.getString(TeamAverageProcessor.MIN_PLAYER + suffix);
+
+        ItemStreamReader<AverageScore> reader =
+                averageScoreReader(ScoreIndexAverageWriter.forScoreIndex(avgOutputFile, scoreIndex));
+        ItemStreamWriter<TeamPerformance> maxWriter = performanceWriter("teamMaxPerformanceWriter-" + scoreIndex,
+                ScoreIndexAverageWriter.forScoreIndex(maxOutputFile, scoreIndex),
+                writer -> writeHeader(writer, maxPlayer, maxScore));
+        ItemStreamWriter<TeamPerformance> minWriter = performanceWriter("teamMinPerformanceWriter-" + scoreIndex,
+                ScoreIndexAverageWriter.forScoreIndex(minOutputFile, scoreIndex),
+                writer -> writeHeader(writer, minPlayer, minScore));
+
+        // Nothing to restart from, the tasklet writes all files of an index again
+        try {
+            reader.open(new ExecutionContext());
+            maxWriter.open(new ExecutionContext());
+            minWriter.open(new ExecutionContext());
+
+            Chunk<TeamPerformance> maxChunk = new Chunk<>();
+            Chunk<TeamPerformance> minChunk = new Chunk<>();
+            AverageScore averageScore;
+            do {
+                averageScore = reader.read();
+                if (averageScore != null) {
+                    contribution.incrementReadCount();
+                    maxChunk.add(process(averageScore, maxScore));
+                    minChunk.add(process(averageScore, minScore));
+                }
+
+                if (maxChunk.size() == PERFORMANCE_CHUNK_SIZE || (averageScore == null && !maxChunk.isEmpty())) {
+                    maxWriter.write(maxChunk);
+                    minWriter.write(minChunk);
+                    contribution.incrementWriteCount(maxChunk.size() + minChunk.size());
+                    maxChunk.clear();
+                    minChunk.clear();
+                }
+            } while (averageScore != null);
+        } finally {
+            reader.close();
+            maxWriter.close();
+            minWriter.close();
+        }
+    }
+
+    @Bean
+    @Qualifier("scoreIndexPerformanceStep")
+    Step scoreIndexPerformanceStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
+                                   @Qualifier("scoreIndexPerformanceTasklet") Tasklet scoreIndexPerformanceTasklet) {
+        return new StepBuilder("scoreIndexPerformanceStep", jobRepository)
+                .tasklet(scoreIndexPerformanceTasklet, transactionManager)
+                .allowStartIfComplete(true)
                 .build();
     }
 
@@ -359,19 +672,44 @@ public class TeamPerformanceBatch {
                 .build();
     }
 
+    @Bean
+    @Qualifier("teamStatisticsJob")
+    Job teamStatisticsJob(JobRepository jobRepository,
+                          @Qualifier("teamStatisticsStep") Step teamStatisticsStep,
+                          @Qualifier("scoreIndexPerformanceStep") Step scoreIndexPerformanceStep,
+                          @Qualifier("fileCreatorStep") Step fileCreatorStep,
+                          @Qualifier("successLoggerStep") Step successLoggerStep) {
+        return new JobBuilder("teamStatisticsJob", jobRepository)
+                .start(teamStatisticsStep)
+                .next(scoreIndexPerformanceStep)
+                .next(fileCreatorStep)
+                .next(successLoggerStep)
+                .build();
+    }
+
     @Bean
     @Qualifier("averageScoreCalculatorJob")
     Job averageScoreCalculatorJob(JobRepository jobRepository,
                                   @Qualifier("teamAverageStep") Step teamAverageStep,
+                                  @Qualifier("partitionedTeamAverageStep") Step partitionedTeamAverageStep,
+                                  @Qualifier("teamAverageMergeStep") Step teamAverageMergeStep,
                                   @Qualifier("teamMaxPerformanceStep") Step teamMaxPerformanceStep,
                                   @Qualifier("teamMinPerformanceStep") Step teamMinPerformanceStep,
                                   @Qualifier("fileCreatorStep") Step fileCreatorStep,
                                   @Qualifier("successLoggerStep") Step successLoggerStep
     ) {
 
-        SimpleFlow teamAverageFlow = new FlowBuilder<SimpleFlow>("teamAverageFlow")
-                .start(teamAverageStep)
-                .build();
+        SimpleFlow teamAverageFlow;
+        if (teamAveragePartitions > 1) {
+            teamAverageFlow = new FlowBuilder<SimpleFlow>("teamAverageFlow")
+                    .start(partitionedTeamAverageStep)
+                    .next(teamAverageMergeStep)
+                    .build();
+        } else {
+            teamAverageFlow = new FlowBuilder<SimpleFlow>("teamAverageFlow")
+                    .start(teamAverageStep)
+                    .build();
+        }
 
         SimpleFlow teamMaxPerformanceFlow = new FlowBuilder<SimpleFlow>("teamMaxPerformanceFlow")
                 .start(teamMaxPerformanceStep)
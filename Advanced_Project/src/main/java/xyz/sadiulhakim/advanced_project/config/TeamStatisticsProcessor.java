@@ -0,0 +1,127 @@
+package xyz.sadiulhakim.advanced_project.config;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import xyz.sadiulhakim.advanced_project.pojo.Team;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.IntStream;
+
+// TeamAverageProcessor for several score indices at once: one pass over the players of a team gives the average and
+// the team's extremes of every index. Without requested indices every index all players of the team have is taken.
+// A team short of an index is left out of that index only, where the single index step skips the whole team.
+// The extremes of index i are promoted as max.score.i, max.player.i and so on, the indices seen as score.indices.
+public class TeamStatisticsProcessor implements ItemProcessor<Team, TeamAverages> {
+
+    public static final String SCORE_INDICES = "score.indices";
+
+    private volatile StepExecution stepExecution;
+    private final Map<Integer, ExtremumTracker> extremes = new ConcurrentSkipListMap<>();
+
+    // Sorted and distinct, null for every index
+    private final int[] scoreIndices;
+
+    public TeamStatisticsProcessor(int[] scoreIndices) {
+        this.scoreIndices = scoreIndices == null ? null : IntStream.of(scoreIndices).sorted().distinct().toArray();
+    }
+
+    @Override
+    public TeamAverages process(Team team) throws Exception {
+
+        if (stepExecution == null)
+            throw new RuntimeException("StepExecution is not set!");
+
+        int common = team.commonScoreCount();
+        int[] indices = scoreIndices == null
+                ? IntStream.range(0, common).toArray()
+                : IntStream.of(scoreIndices).filter(index -> index < common).toArray();
+
+        // Filtered, the team has none of the indices
+        if (indices.length == 0) {
+            return null;
+        }
+
+        int players = team.playerCount();
+        double[] sums = new double[indices.length];
+        double[] maxScores = new double[indices.length];
+        double[] minScores = new double[indices.length];
+        int[] maxPositions = new int[indices.length];
+        int[] minPositions = new int[indices.length];
+
+        // Player by player, the scores of a player are next to each other in the team
+        for (int i = 0; i < players; i++) {
+            for (int k = 0; k < indices.length; k++) {
+                double score = team.score(i, indices[k]);
+
+                // Strict comparisons, the first of equal scores in the team is kept
+                if (i == 0 || score > maxScores[k]) {
+                    maxScores[k] = score;
+                    maxPositions[k] = i;
+                }
+
+                if (i == 0 || score < minScores[k]) {
+                    minScores[k] = score;
+                    minPositions[k] = i;
+                }
+
+                sums[k] += score;
+            }
+        }
+
+        double[] averages = new double[indices.length];
+        for (int k = 0; k < indices.length; k++) {
+            ExtremumTracker tracker = extremes.computeIfAbsent(indices[k], index -> new ExtremumTracker());
+            tracker.offerMax(maxScores[k], team.playerName(maxPositions[k]), team.ordinal(), maxPositions[k]);
+            tracker.offerMin(minScores[k], team.playerName(minPositions[k]), team.ordinal(), minPositions[k]);
+            averages[k] = sums[k] / players;
+        }
+
+        return new TeamAverages(team.name(), indices, averages);
+    }
+
+    public void setStepExecution(StepExecution stepExecution) {
+        if (stepExecution != null) {
+            ExecutionContext executionContext = stepExecution.getExecutionContext();
+            for (int index : parseScoreIndices(executionContext.getString(SCORE_INDICES, ""))) {
+                extremes.computeIfAbsent(index, i -> new ExtremumTracker())
+                        .restore(executionContext, ExtremumTracker.keySuffix(index));
+            }
+        }
+        this.stepExecution = stepExecution;
+    }
+
+    // Called once per chunk, the extremes seen so far go into the step's ExecutionContext
+    public void promoteExtremes() {
+        StepExecution current = stepExecution;
+        if (current != null) {
+            ExecutionContext executionContext = current.getExecutionContext();
+            extremes.forEach((index, tracker) -> tracker.promote(executionContext, ExtremumTracker.keySuffix(index)));
+            executionContext.putString(SCORE_INDICES, formatScoreIndices(extremes.keySet()));
+        }
+    }
+
+    // "0,3,5", an empty or null string is no index
+    public static int[] parseScoreIndices(String scoreIndices) {
+        if (scoreIndices == null || scoreIndices.isBlank()) {
+            return new int[0];
+        }
+        return Arrays.stream(scoreIndices.split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+    }
+
+    public static String formatScoreIndices(Iterable<Integer> scoreIndices) {
+        StringBuilder builder = new StringBuilder();
+        for (int index : scoreIndices) {
+            if (!builder.isEmpty()) {
+                builder.append(',');
+            }
+            builder.append(index);
+        }
+        return builder.toString();
+    }
+}
@@ -1,43 +1,73 @@
 package xyz.sadiulhakim.advanced_project.controller;
 
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
 import org.springframework.batch.core.JobParametersInvalidException;
-import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
 import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
 import org.springframework.batch.core.repository.JobRestartException;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import xyz.sadiulhakim.advanced_project.config.TeamStatisticsProcessor;
+import xyz.sadiulhakim.batch_commons.launcher.JobStatus;
+import xyz.sadiulhakim.batch_commons.launcher.JobSubmissionService;
 
+import java.net.URI;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
 public class ApplicationController {
 
-    @Qualifier("asyncJobLauncher")
-    private final JobLauncher asyncJobLauncher;
+    private final JobSubmissionService jobSubmissionService;
 
     @Qualifier("averageScoreCalculatorJob")
     private final Job averageScoreCalculatorJob;
 
-    public ApplicationController(JobLauncher asyncJobLauncher, Job averageScoreCalculatorJob) {
-        this.asyncJobLauncher = asyncJobLauncher;
+    @Qualifier("teamStatisticsJob")
+    private final Job teamStatisticsJob;
+
+    public ApplicationController(JobSubmissionService jobSubmissionService, Job averageScoreCalculatorJob,
+                                 Job teamStatisticsJob) {
+        this.jobSubmissionService = jobSubmissionService;
         this.averageScoreCalculatorJob = averageScoreCalculatorJob;
+        this.teamStatisticsJob = teamStatisticsJob;
     }
 
+    // Returns 202 with the execution id right away, progress is at /jobs/{executionId}
     @PostMapping("/start")
-    String start(@RequestParam long scoreIndex) throws JobInstanceAlreadyCompleteException, JobExecutionAlreadyRunningException, JobParametersInvalidException, JobRestartException {
+    ResponseEntity<JobStatus> start(@RequestParam long scoreIndex) throws JobInstanceAlreadyCompleteException, JobExecutionAlreadyRunningException, JobParametersInvalidException, JobRestartException {
         String id = UUID.randomUUID().toString();
         JobParameters jobParameters = new JobParametersBuilder()
                 .addString("id", id)
                 .addLong("scoreIndex", scoreIndex)
                 .toJobParameters();
 
-        asyncJobLauncher.run(averageScoreCalculatorJob, jobParameters);
-        return "Job with id " + id + " was submitted";
+        JobExecution execution = jobSubmissionService.submit(averageScoreCalculatorJob, jobParameters);
+        return ResponseEntity.accepted()
+                .location(URI.create("/jobs/" + execution.getId()))
+                .body(JobStatus.of(execution));
+    }
+
+    // Every score index in one read of the team files, or only the given ones (?scoreIndices=0,3,5). The outputs are
+    // keyed by index: avg-3.txt, max-3.txt and min-3.txt for index 3.
+    @PostMapping("/statistics")
+    ResponseEntity<JobStatus> statistics(@RequestParam(required = false) List<Integer> scoreIndices) throws JobInstanceAlreadyCompleteException, JobExecutionAlreadyRunningException, JobParametersInvalidException, JobRestartException {
+        String id = UUID.randomUUID().toString();
+        JobParametersBuilder builder = new JobParametersBuilder()
+                .addString("id", id);
+        if (scoreIndices != null && !scoreIndices.isEmpty()) {
+            builder.addString("scoreIndices", TeamStatisticsProcessor.formatScoreIndices(scoreIndices));
+        }
+
+        JobExecution execution = jobSubmissionService.submit(teamStatisticsJob, builder.toJobParameters());
+        return ResponseEntity.accepted()
+                .location(URI.create("/jobs/" + execution.getId()))
+                .body(JobStatus.of(execution));
     }
 }
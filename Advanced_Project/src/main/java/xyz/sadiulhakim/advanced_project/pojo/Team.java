@@ -1,14 +1,43 @@
 package xyz.sadiulhakim.advanced_project.pojo;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Objects;
 
+// A team as struct of arrays: player i is players[i], its scores are scores[scoreStarts[i] .. scoreStarts[i + 1])
 public record Team(
         String name,
-        List<Player> players
+        // Position of the team in the input, 0 for the first team read
+        long ordinal,
+        String[] players,
+        double[] scores,
+        int[] scoreStarts
 ) {
 
-    public Team(String name) {
-        this(name, new ArrayList<>());
+    public int playerCount() {
+        return players.length;
+    }
+
+    public String playerName(int player) {
+        return players[player];
+    }
+
+    public int scoreCount(int player) {
+        return scoreStarts[player + 1] - scoreStarts[player];
+    }
+
+    // Score indices every player of the team has, 0 for a team without players
+    public int commonScoreCount() {
+        if (players.length == 0) {
+            return 0;
+        }
+        int common = Integer.MAX_VALUE;
+        for (int i = 0; i < players.length; i++) {
+            common = Math.min(common, scoreCount(i));
+        }
+        return common;
+    }
+
+    // IndexOutOfBoundsException when the player has no score at scoreIndex, the step skips such a team
+    public double score(int player, int scoreIndex) {
+        return scores[scoreStarts[player] + Objects.checkIndex(scoreIndex, scoreCount(player))];
     }
 }
@@ -0,0 +1,62 @@
+package xyz.sadiulhakim.basic_project.config;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import xyz.sadiulhakim.basic_project.pojo.DataAnomaly;
+import xyz.sadiulhakim.basic_project.pojo.RawDailySensorData;
+import xyz.sadiulhakim.basic_project.pojo.SensorData;
+import xyz.sadiulhakim.basic_project.pojo.SensorDataWithAnomaly;
+
+// Aggregates the raw line and checks it for anomalies in one go, so the SensorData never has to be
+// written to XML and parsed back just to run the anomaly processor.
+// Delegates that keep state between items (SlidingWindowAnomalyProcessor) get their ItemStream calls forwarded.
+public class FusedSensorDataProcessor implements ItemProcessor<RawDailySensorData, SensorDataWithAnomaly>, ItemStream {
+
+    private final ItemProcessor<RawDailySensorData, SensorData> sensorDataProcessor;
+    private final ItemProcessor<SensorData, DataAnomaly> anomalyProcessor;
+
+    public FusedSensorDataProcessor(ItemProcessor<RawDailySensorData, SensorData> sensorDataProcessor,
+                                    ItemProcessor<SensorData, DataAnomaly> anomalyProcessor) {
+        this.sensorDataProcessor = sensorDataProcessor;
+        this.anomalyProcessor = anomalyProcessor;
+    }
+
+    @Override
+    public SensorDataWithAnomaly process(RawDailySensorData item) throws Exception {
+        SensorData sensorData = sensorDataProcessor.process(item);
+        if (sensorData == null) {
+            return null;
+        }
+
+        return new SensorDataWithAnomaly(sensorData, anomalyProcessor.process(sensorData));
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        for (Object delegate : new Object[]{sensorDataProcessor, anomalyProcessor}) {
+            if (delegate instanceof ItemStream stream) {
+                stream.open(executionContext);
+            }
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        for (Object delegate : new Object[]{sensorDataProcessor, anomalyProcessor}) {
+            if (delegate instanceof ItemStream stream) {
+                stream.update(executionContext);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        for (Object delegate : new Object[]{sensorDataProcessor, anomalyProcessor}) {
+            if (delegate instanceof ItemStream stream) {
+                stream.close();
+            }
+        }
+    }
+}
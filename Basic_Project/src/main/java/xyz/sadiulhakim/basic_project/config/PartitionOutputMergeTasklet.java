@@ -0,0 +1,144 @@
+package xyz.sadiulhakim.basic_project.config;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.WritableResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Concatenates the per-partition outputs of the partitioned sensor step, in partition (= file) order, into the same
+// XML and CSV files the single threaded job writes. Every partial XML is a complete document, so only the content
+// between its root tags is copied. Part files are removed once both merged files are in place.
+public class PartitionOutputMergeTasklet implements Tasklet {
+
+    private static final String PART_SUFFIX = ".part-";
+
+    private final WritableResource xmlOutput;
+    private final WritableResource csvOutput;
+    private final String rootTagName;
+    private final int partitions;
+
+    public PartitionOutputMergeTasklet(WritableResource xmlOutput, WritableResource csvOutput, String rootTagName,
+                                       int partitions) {
+        this.xmlOutput = xmlOutput;
+        this.csvOutput = csvOutput;
+        this.rootTagName = rootTagName;
+        this.partitions = partitions;
+    }
+
+    // Output file of one partition, next to the final output
+    public static WritableResource partOf(Resource output, int partitionIndex) throws IOException {
+        return new FileSystemResource(output.getFile().getPath() + PART_SUFFIX + String.format("%04d", partitionIndex));
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        File xml = xmlOutput.getFile();
+        File csv = csvOutput.getFile();
+
+        // Restart after the parts were already merged and removed
+        if (!partOf(xmlOutput, 0).exists() && xml.exists() && csv.exists()) {
+            return RepeatStatus.FINISHED;
+        }
+
+        mergeXml(xml);
+        mergeCsv(csv);
+
+        for (int i = 0; i < partitions; i++) {
+            Files.deleteIfExists(partOf(xmlOutput, i).getFile().toPath());
+            Files.deleteIfExists(partOf(csvOutput, i).getFile().toPath());
+        }
+        return RepeatStatus.FINISHED;
+    }
+
+    private void mergeXml(File xml) throws IOException {
+        byte[] startTag = ("<" + rootTagName + ">").getBytes(StandardCharsets.UTF_8);
+        byte[] endTag = ("</" + rootTagName + ">").getBytes(StandardCharsets.UTF_8);
+
+        Path tmp = tmpOf(xml);
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < partitions; i++) {
+                try (FileChannel in = FileChannel.open(partOf(xmlOutput, i).getFile().toPath(), StandardOpenOption.READ)) {
+                    long bodyStart = indexOf(in, startTag) + startTag.length;
+                    long bodyEnd = lastIndexOf(in, endTag);
+                    if (bodyStart < startTag.length || bodyEnd < bodyStart) {
+                        throw new IOException("Partition output " + i + " is not a complete <" + rootTagName + "> document");
+                    }
+
+                    // XML declaration and root start tag come from the first part, the end tag is written once
+                    transfer(in, i == 0 ? 0 : bodyStart, bodyEnd, out);
+                }
+            }
+            out.write(ByteBuffer.wrap(endTag));
+        }
+        Files.move(tmp, xml.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void mergeCsv(File csv) throws IOException {
+        Path tmp = tmpOf(csv);
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < partitions; i++) {
+                try (FileChannel in = FileChannel.open(partOf(csvOutput, i).getFile().toPath(), StandardOpenOption.READ)) {
+                    transfer(in, 0, in.size(), out);
+                }
+            }
+        }
+        Files.move(tmp, csv.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Path tmpOf(File file) {
+        return file.toPath().resolveSibling(file.getName() + ".merging");
+    }
+
+    private static void transfer(FileChannel in, long from, long to, FileChannel out) throws IOException {
+        long position = from;
+        while (position < to) {
+            position += in.transferTo(position, to - position, out);
+        }
+    }
+
+    // The root start tag sits right after the XML declaration
+    private static long indexOf(FileChannel in, byte[] tag) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(in.size(), 1024));
+        in.read(head, 0);
+        return find(head.array(), head.position(), tag, false);
+    }
+
+    // The root end tag is the last thing in the document
+    private static long lastIndexOf(FileChannel in, byte[] tag) throws IOException {
+        int length = (int) Math.min(in.size(), 1024);
+        long from = in.size() - length;
+        ByteBuffer tail = ByteBuffer.allocate(length);
+        in.read(tail, from);
+        long index = find(tail.array(), tail.position(), tag, true);
+        return index < 0 ? -1 : from + index;
+    }
+
+    private static long find(byte[] bytes, int length, byte[] tag, boolean last) {
+        long found = -1;
+        for (int i = 0; i + tag.length <= length; i++) {
+            if (Arrays.equals(bytes, i, i + tag.length, tag, 0, tag.length)) {
+                if (!last) {
+                    return i;
+                }
+                found = i;
+            }
+        }
+        return found;
+    }
+}
@@ -1,26 +1,50 @@
 package xyz.sadiulhakim.basic_project.config;
 
 import org.springframework.batch.item.ItemProcessor;
+import xyz.sadiulhakim.basic_project.pojo.MeasurementBuffer;
 import xyz.sadiulhakim.basic_project.pojo.RawDailySensorData;
 import xyz.sadiulhakim.basic_project.pojo.SensorData;
+import xyz.sadiulhakim.basic_project.pojo.SensorStatistics;
+
+import java.util.List;
 
 public class RawToSensorDataItemProcessor implements ItemProcessor<RawDailySensorData, SensorData> {
 
+    // Also select the percentiles, only the spread anomaly check needs them
+    private final boolean percentiles;
+
+    public RawToSensorDataItemProcessor() {
+        this(false);
+    }
+
+    public RawToSensorDataItemProcessor(boolean percentiles) {
+        this.percentiles = percentiles;
+    }
+
     @Override
     public SensorData process(RawDailySensorData item) throws Exception {
-        double min = item.getMeasurements().getFirst();
-        double max = min;
-        double sum = 0;
-
-        for (double measurement : item.getMeasurements()) {
-            min = Math.min(min, measurement);
-            max = Math.min(max, measurement);
-            sum += measurement;
-        }
+        MeasurementBuffer readings = item.getReadings();
+        double[] values = readings != null ? readings.values() : unbox(item.getMeasurements());
+        int size = readings != null ? readings.size() : item.getMeasurements().size();
+        SensorStatistics statistics = percentiles
+                ? SensorStatisticsKernel.compute(values, size)
+                : SensorStatisticsKernel.moments(values, size);
 
-        double avg = sum / item.getMeasurements().size();
+        SensorData sensorData = new SensorData(item.getDate(), convertToCelsius(statistics.getMax()),
+                convertToCelsius(statistics.getMean()), convertToCelsius(statistics.getMin()));
 
-        return new SensorData(item.getDate(), convertToCelsius(min), convertToCelsius(avg), convertToCelsius(max));
+        // The conversion is linear, so every statistic converts on its own and the spread only gets scaled
+        sensorData.setStatistics(5 * statistics.getStddev() / 9, convertToCelsius(statistics.getP05()),
+                convertToCelsius(statistics.getMedian()), convertToCelsius(statistics.getP95()));
+        return sensorData;
+    }
+
+    private static double[] unbox(List<Double> measurements) {
+        double[] values = new double[measurements.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = measurements.get(i);
+        }
+        return values;
     }
 
     private static double convertToCelsius(double fahT) {
@@ -9,8 +9,26 @@ public class SensorDataAnomalyProcessor implements ItemProcessor<SensorData, Dat
 
     private static final double THRESHOLD = 0.9;
 
+    // How far outside the 5th to 95th percentile range, as a share of the range, an extreme reading has to lie.
+    // A day has only a handful of readings, so the 5th and 95th percentile sit close to the extremes.
+    private static final double SPREAD_FENCE = 1.0 / 3;
+
+    // Judge a day by the spread of its readings (RawToSensorDataItemProcessor with percentiles) instead of the ratios
+    private final boolean spread;
+
+    public SensorDataAnomalyProcessor() {
+        this(false);
+    }
+
+    public SensorDataAnomalyProcessor(boolean spread) {
+        this.spread = spread;
+    }
+
     @Override
     public DataAnomaly process(SensorData item) throws Exception {
+        if (spread) {
+            return spreadAnomaly(item);
+        }
 
         if ((item.getMin() / item.getAvg()) < THRESHOLD) {
             return new DataAnomaly(item.getDate(), AnomalyType.MINIMUM, item.getMin());
@@ -20,4 +38,23 @@ public class SensorDataAnomalyProcessor implements ItemProcessor<SensorData, Dat
             return null;
         }
     }
+
+    // The lowest (highest) reading lies more than SPREAD_FENCE of the 5th to 95th percentile range below the 5th
+    // (above the 95th) percentile, a few readings far off the rest of the day. The severity is the distance from the
+    // median in standard deviations of the day's readings.
+    private static DataAnomaly spreadAnomaly(SensorData item) {
+        if (!(item.getStddev() > 0)) {
+            return null;
+        }
+
+        double range = item.getP95() - item.getP05();
+        double below = item.getP05() - item.getMin();
+        double above = item.getMax() - item.getP95();
+        if (Math.max(below, above) <= SPREAD_FENCE * range) {
+            return null;
+        }
+        return below >= above
+                ? new DataAnomaly(item.getDate(), AnomalyType.MINIMUM, item.getMin(), (item.getMedian() - item.getMin()) / item.getStddev())
+                : new DataAnomaly(item.getDate(), AnomalyType.MAXIMUM, item.getMax(), (item.getMax() - item.getMedian()) / item.getStddev());
+    }
 }
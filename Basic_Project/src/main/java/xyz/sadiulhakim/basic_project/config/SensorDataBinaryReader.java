@@ -0,0 +1,180 @@
+package xyz.sadiulhakim.basic_project.config;
+
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ParseException;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.core.io.Resource;
+import xyz.sadiulhakim.basic_project.pojo.SensorData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+// Reads back the column blocks written by SensorDataBinaryWriter, one block per FileChannel read.
+// Restart uses the item count of the parent class, jumpToItem skips whole blocks by their record count.
+public class SensorDataBinaryReader extends AbstractItemCountingItemStreamItemReader<SensorData> {
+
+    private final Resource resource;
+
+    private FileChannel channel;
+    private long position;
+    private ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + 1_024 * SensorDataBinaryWriter.RECORD_SIZE);
+    private final ByteBuffer count = ByteBuffer.allocate(Integer.BYTES);
+
+    // Current block, decoded column by column
+    private String[] dates = new String[0];
+    private double[] mins = new double[0];
+    private double[] avgs = new double[0];
+    private double[] maxs = new double[0];
+    private double[] stddevs = new double[0];
+    private double[] p05s = new double[0];
+    private double[] medians = new double[0];
+    private double[] p95s = new double[0];
+    private int blockSize;
+    private int blockIndex;
+
+    public SensorDataBinaryReader(Resource resource) {
+        this.resource = resource;
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ);
+
+        ByteBuffer header = ByteBuffer.allocate(SensorDataBinaryWriter.HEADER_SIZE);
+        if (!readFully(header, 0)) {
+            throw new ItemStreamException(resource + " is too short for a sensor data header");
+        }
+        int magic = header.getInt();
+        short version = header.getShort();
+        short dateWidth = header.getShort();
+        if (magic != SensorDataBinaryWriter.MAGIC || version != SensorDataBinaryWriter.VERSION
+                || dateWidth != SensorDataBinaryWriter.DATE_WIDTH) {
+            throw new ItemStreamException(resource + " is not a sensor data file of version "
+                    + SensorDataBinaryWriter.VERSION);
+        }
+
+        position = SensorDataBinaryWriter.HEADER_SIZE;
+        blockSize = 0;
+        blockIndex = 0;
+    }
+
+    @Override
+    protected SensorData doRead() throws Exception {
+        if (blockIndex == blockSize && !readBlock()) {
+            return null;
+        }
+        int i = blockIndex++;
+        SensorData sensorData = new SensorData(dates[i], maxs[i], avgs[i], mins[i]);
+        sensorData.setStatistics(stddevs[i], p05s[i], medians[i], p95s[i]);
+        return sensorData;
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) throws Exception {
+        int remaining = itemIndex;
+        while (remaining > 0) {
+            int records = readCount();
+            if (records < 0) {
+                return;
+            }
+            if (records > remaining) {
+                readBlock();
+                blockIndex = remaining;
+                return;
+            }
+            position += Integer.BYTES + (long) records * SensorDataBinaryWriter.RECORD_SIZE;
+            remaining -= records;
+        }
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        blockSize = 0;
+        blockIndex = 0;
+    }
+
+    private boolean readBlock() throws IOException {
+        int records = readCount();
+        if (records < 0) {
+            return false;
+        }
+
+        int size = records * SensorDataBinaryWriter.RECORD_SIZE;
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(size);
+        }
+        buffer.clear().limit(size);
+        if (!readFully(buffer, position + Integer.BYTES)) {
+            throw new ParseException("Truncated block of " + records + " records at byte " + position + " of " + resource);
+        }
+        position += Integer.BYTES + size;
+
+        if (dates.length < records) {
+            dates = new String[records];
+            mins = new double[records];
+            avgs = new double[records];
+            maxs = new double[records];
+            stddevs = new double[records];
+            p05s = new double[records];
+            medians = new double[records];
+            p95s = new double[records];
+        }
+
+        byte[] date = new byte[SensorDataBinaryWriter.DATE_WIDTH];
+        for (int i = 0; i < records; i++) {
+            buffer.get(date);
+            int length = date.length;
+            while (length > 0 && date[length - 1] == ' ') {
+                length--;
+            }
+            dates[i] = new String(date, 0, length, StandardCharsets.US_ASCII);
+        }
+        readColumn(mins, records);
+        readColumn(avgs, records);
+        readColumn(maxs, records);
+        readColumn(stddevs, records);
+        readColumn(p05s, records);
+        readColumn(medians, records);
+        readColumn(p95s, records);
+
+        blockSize = records;
+        blockIndex = 0;
+        return true;
+    }
+
+    // Record count of the block at position, -1 at the end of the file
+    private void readColumn(double[] column, int records) {
+        for (int i = 0; i < records; i++) {
+            column[i] = buffer.getDouble();
+        }
+    }
+
+    private int readCount() throws IOException {
+        count.clear();
+        if (!readFully(count, position)) {
+            return -1;
+        }
+        return count.getInt();
+    }
+
+    // Reads until the buffer is full and flips it, false when the file ends before that
+    private boolean readFully(ByteBuffer target, long from) throws IOException {
+        long at = from;
+        while (target.hasRemaining()) {
+            int read = channel.read(target, at);
+            if (read < 0) {
+                return false;
+            }
+            at += read;
+        }
+        target.flip();
+        return true;
+    }
+}
@@ -0,0 +1,160 @@
+package xyz.sadiulhakim.basic_project.config;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.core.io.WritableResource;
+import xyz.sadiulhakim.basic_project.pojo.SensorData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes SensorData in a compact binary format instead of XML, read back by {@link SensorDataBinaryReader}.
+ * <p>
+ * The file starts with an 8 byte header: magic {@code SDB1}, format version (short) and date width (short).
+ * Then every chunk is written as one column block: the record count (int), the dates as fixed width ASCII padded
+ * with spaces, then all minimums, all averages and all maximums as doubles, followed by the standard deviations,
+ * 5th percentiles, medians and 95th percentiles of the day's readings. No reflection and no text formatting is
+ * involved, and the reader can skip a whole block by its count.
+ * <p>
+ * The byte position after the last chunk is saved in the execution context, a restart cuts the file back to it.
+ */
+public class SensorDataBinaryWriter extends ItemStreamSupport implements ItemStreamWriter<SensorData> {
+
+    static final int MAGIC = 0x53444231; // "SDB1"
+    static final short VERSION = 2;
+    static final int HEADER_SIZE = 8;
+
+    // Dates look like 01-31-2015
+    static final int DATE_WIDTH = 10;
+
+    // Date plus min, avg, max, stddev, p05, median and p95
+    static final int RECORD_SIZE = DATE_WIDTH + 7 * Double.BYTES;
+
+    private static final String POSITION = "position";
+
+    private final WritableResource resource;
+
+    private FileChannel channel;
+    private long position;
+    private ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + 1_024 * RECORD_SIZE);
+
+    public SensorDataBinaryWriter(WritableResource resource) {
+        this.resource = resource;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        try {
+            Path path = resource.getFile().toPath();
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+
+            if (executionContext.containsKey(getExecutionContextKey(POSITION))) {
+                // Restart, drop whatever was written after the last committed chunk
+                position = executionContext.getLong(getExecutionContextKey(POSITION));
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                channel.truncate(position);
+                return;
+            }
+
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putShort(VERSION)
+                    .putShort((short) DATE_WIDTH)
+                    .flip();
+            position = 0;
+            writeFully(header);
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not open " + resource, e);
+        }
+    }
+
+    @Override
+    public void write(Chunk<? extends SensorData> chunk) throws Exception {
+        int count = chunk.size();
+        if (count == 0) {
+            return;
+        }
+
+        int blockSize = Integer.BYTES + count * RECORD_SIZE;
+        if (buffer.capacity() < blockSize) {
+            buffer = ByteBuffer.allocate(blockSize);
+        }
+        buffer.clear();
+        buffer.putInt(count);
+
+        for (SensorData item : chunk) {
+            putDate(item.getDate());
+        }
+        for (SensorData item : chunk) {
+            buffer.putDouble(item.getMin());
+        }
+        for (SensorData item : chunk) {
+            buffer.putDouble(item.getAvg());
+        }
+        for (SensorData item : chunk) {
+            buffer.putDouble(item.getMax());
+        }
+        for (SensorData item : chunk) {
+            buffer.putDouble(item.getStddev());
+        }
+        for (SensorData item : chunk) {
+            buffer.putDouble(item.getP05());
+        }
+        for (SensorData item : chunk) {
+            buffer.putDouble(item.getMedian());
+        }
+        for (SensorData item : chunk) {
+            buffer.putDouble(item.getP95());
+        }
+
+        writeFully(buffer.flip());
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        executionContext.putLong(getExecutionContextKey(POSITION), position);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not close " + resource, e);
+        } finally {
+            channel = null;
+        }
+    }
+
+    private void putDate(String date) {
+        if (date.length() > DATE_WIDTH) {
+            throw new IllegalArgumentException("Date '" + date + "' is longer than " + DATE_WIDTH + " characters");
+        }
+        buffer.put(date.getBytes(StandardCharsets.US_ASCII));
+        for (int i = date.length(); i < DATE_WIDTH; i++) {
+            buffer.put((byte) ' ');
+        }
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            position += channel.write(source, position);
+        }
+    }
+}
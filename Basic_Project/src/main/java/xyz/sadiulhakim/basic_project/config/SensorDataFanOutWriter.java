@@ -0,0 +1,67 @@
+package xyz.sadiulhakim.basic_project.config;
+
+import org.springframework.batch.item.*;
+import xyz.sadiulhakim.basic_project.pojo.DataAnomaly;
+import xyz.sadiulhakim.basic_project.pojo.SensorData;
+import xyz.sadiulhakim.basic_project.pojo.SensorDataWithAnomaly;
+
+// Splits every chunk of the fused step into the XML writer and the anomaly CSV writer.
+// Both delegates keep their own restart state, this writer only forwards the ItemStream callbacks.
+public class SensorDataFanOutWriter implements ItemStreamWriter<SensorDataWithAnomaly> {
+
+    private final ItemStreamWriter<SensorData> sensorDataWriter;
+    private final ItemStreamWriter<DataAnomaly> dataAnomalyWriter;
+
+    // A step scoped instance is closed by the step and again when the scope destroys it
+    private boolean opened;
+
+    public SensorDataFanOutWriter(ItemStreamWriter<SensorData> sensorDataWriter,
+                                  ItemStreamWriter<DataAnomaly> dataAnomalyWriter) {
+        this.sensorDataWriter = sensorDataWriter;
+        this.dataAnomalyWriter = dataAnomalyWriter;
+    }
+
+    @Override
+    public void write(Chunk<? extends SensorDataWithAnomaly> chunk) throws Exception {
+        Chunk<SensorData> sensorData = new Chunk<>();
+        Chunk<DataAnomaly> anomalies = new Chunk<>();
+
+        for (SensorDataWithAnomaly item : chunk) {
+            sensorData.add(item.sensorData());
+            if (item.anomaly() != null) {
+                anomalies.add(item.anomaly());
+            }
+        }
+
+        sensorDataWriter.write(sensorData);
+        if (!anomalies.isEmpty()) {
+            dataAnomalyWriter.write(anomalies);
+        }
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        sensorDataWriter.open(executionContext);
+        dataAnomalyWriter.open(executionContext);
+        opened = true;
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        sensorDataWriter.update(executionContext);
+        dataAnomalyWriter.update(executionContext);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (!opened) {
+            return;
+        }
+        opened = false;
+        try {
+            sensorDataWriter.close();
+        } finally {
+            dataAnomalyWriter.close();
+        }
+    }
+}
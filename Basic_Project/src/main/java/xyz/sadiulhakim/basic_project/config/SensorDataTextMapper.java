@@ -1,15 +1,44 @@
 package xyz.sadiulhakim.basic_project.config;
 
-import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.file.FlatFileParseException;
+import xyz.sadiulhakim.basic_project.pojo.MeasurementBuffer;
 import xyz.sadiulhakim.basic_project.pojo.RawDailySensorData;
+import xyz.sadiulhakim.batch_commons.file.CharSequenceLineMapper;
 
 import java.util.Arrays;
 import java.util.List;
 
-public class SensorDataTextMapper implements LineMapper<RawDailySensorData> {
+public class SensorDataTextMapper implements CharSequenceLineMapper<RawDailySensorData> {
+
+    // Powers of ten that are exactly representable as double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Up to 15 decimal digits always fit in the 53-bit mantissa of a double
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private final boolean primitive;
+
+    // Scratch buffer reused for every line, only the trimmed copy is handed over to the item
+    private final MeasurementBuffer buffer = new MeasurementBuffer();
+
+    public SensorDataTextMapper() {
+        this(false);
+    }
+
+    // When primitive is true readings are parsed straight into a double[] instead of a List<Double>
+    public SensorDataTextMapper(boolean primitive) {
+        this.primitive = primitive;
+    }
 
     @Override
     public RawDailySensorData mapLine(String line, int lineNumber) throws Exception {
+        if (primitive) {
+            return mapLine((CharSequence) line, lineNumber);
+        }
+
         RawDailySensorData data = new RawDailySensorData();
 
         // Set date
@@ -22,4 +51,88 @@ public class SensorDataTextMapper implements LineMapper<RawDailySensorData> {
         data.setMeasurements(values);
         return data;
     }
+
+    // Scans the line once: no regex, no String per token and no boxed Double per reading.
+    // The only allocations are the date String and the trimmed double[] of the item.
+    @Override
+    public RawDailySensorData mapLine(CharSequence line, int lineNumber) throws Exception {
+        if (!primitive) {
+            return mapLine(line.toString(), lineNumber);
+        }
+
+        int length = line.length();
+        int colon = indexOf(line, ':', 0, length);
+        if (colon < 0) {
+            throw new FlatFileParseException("Sensor line has no ':' after the date", line.toString(), lineNumber);
+        }
+
+        String date = line.subSequence(0, colon).toString();
+
+        buffer.clear();
+        int start = colon + 1;
+        while (start < length) {
+            int end = indexOf(line, ',', start, length);
+            if (end < 0) {
+                end = length;
+            }
+            buffer.add(parseDouble(line, start, end));
+            start = end + 1;
+        }
+
+        return new RawDailySensorData(date, buffer.copy());
+    }
+
+    private static int indexOf(CharSequence line, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Parses plain decimals like "-76.63" without allocating. Dividing an exact mantissa by an exact power of ten
+    // is correctly rounded, so the result is identical to Double.parseDouble. Anything else (exponents, NaN,
+    // very long numbers) falls back to Double.parseDouble.
+    static double parseDouble(CharSequence line, int start, int end) {
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fraction) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+
+        if (i != end || digits == 0 || digits > MAX_EXACT_DIGITS || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(line.subSequence(start, end).toString());
+        }
+
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
 }
@@ -0,0 +1,251 @@
+package xyz.sadiulhakim.basic_project.config;
+
+import xyz.sadiulhakim.basic_project.pojo.SensorStatistics;
+
+/**
+ * Computes min, max, mean, standard deviation and percentiles of a {@code double[]} of readings.
+ * <p>
+ * Min, max, sum and sum of squares come out of a single pass. When the JVM is started with
+ * {@code --add-modules jdk.incubator.vector} that pass runs on {@link VectorMoments}, otherwise on a scalar loop.
+ * Both accumulate in {@link #LANES} interleaved lanes and combine them in the same order, so the result does not
+ * depend on which one ran. Percentiles are found by quickselect on a per-thread copy, which only orders the
+ * readings as far as the three ranks need and stays linear instead of sorting the whole day. {@link #moments} skips
+ * them for callers that only need the single pass.
+ */
+public final class SensorStatisticsKernel {
+
+    // Width of the accumulators, matches DoubleVector.SPECIES_256
+    static final int LANES = 4;
+
+    private static final boolean VECTORISED = vectorMomentsAvailable();
+
+    // Below this many readings a range is finished by insertion sort instead of being partitioned further
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    // Copy of the readings for the percentiles, per thread because partitions share one processor
+    private static final ThreadLocal<double[]> SCRATCH = ThreadLocal.withInitial(() -> new double[64]);
+
+    private SensorStatisticsKernel() {
+    }
+
+    public static boolean isVectorised() {
+        return VECTORISED;
+    }
+
+    public static SensorStatistics compute(double[] values, int size) {
+        return compute(values, size, true);
+    }
+
+    // Min, max, mean and standard deviation only, the percentiles are NaN
+    public static SensorStatistics moments(double[] values, int size) {
+        return compute(values, size, false);
+    }
+
+    private static SensorStatistics compute(double[] values, int size, boolean percentiles) {
+        if (size <= 0 || size > values.length) {
+            throw new IllegalArgumentException("Cannot compute statistics of " + size + " readings");
+        }
+
+        // Sums are taken relative to the first reading, which keeps the variance from cancelling out
+        // when the readings are large compared to their spread
+        double shift = values[0];
+        double[] moments = new double[4];
+        if (VECTORISED) {
+            VectorMoments.accumulate(values, size, shift, moments);
+        } else {
+            accumulate(values, size, shift, moments);
+        }
+
+        double min = moments[0];
+        double max = moments[1];
+        double sum = moments[2];
+        double sumOfSquares = moments[3];
+
+        double mean = shift + sum / size;
+        double variance = Math.max(0, (sumOfSquares - sum * sum / size) / size);
+        if (!percentiles) {
+            return new SensorStatistics(size, min, max, mean, Math.sqrt(variance), Double.NaN, Double.NaN, Double.NaN);
+        }
+
+        double[] scratch = copy(values, size);
+
+        // Select the highest rank first so each lower one only has to search the part below it
+        int rank95 = rank(size, 0.95);
+        int rank50 = rank(size, 0.5);
+        int rank05 = rank(size, 0.05);
+        select(scratch, 0, size, rank95);
+        select(scratch, 0, rank95, rank50);
+        select(scratch, 0, rank50, rank05);
+
+        // The reading following a rank is the smallest one between it and the next selected rank
+        int upper95 = size - 1;
+        int upper50 = rank50 < rank95 ? rank95 : upper95;
+        int upper05 = rank05 < rank50 ? rank50 : upper50;
+
+        return new SensorStatistics(size, min, max, mean, Math.sqrt(variance),
+                percentile(scratch, size, 0.05, rank05, upper05),
+                percentile(scratch, size, 0.5, rank50, upper50),
+                percentile(scratch, size, 0.95, rank95, upper95));
+    }
+
+    // Scalar version of VectorMoments.accumulate. Four independent accumulators instead of one keep the additions
+    // from waiting on each other, lane i takes the readings at i, i + LANES, i + 2 * LANES...
+    static void accumulate(double[] values, int size, double shift, double[] moments) {
+        double min = values[0];
+        double max = values[0];
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        double square0 = 0, square1 = 0, square2 = 0, square3 = 0;
+
+        int bound = size - size % LANES;
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            double value0 = values[i], value1 = values[i + 1], value2 = values[i + 2], value3 = values[i + 3];
+            min = Math.min(Math.min(min, value0), Math.min(Math.min(value1, value2), value3));
+            max = Math.max(Math.max(max, value0), Math.max(Math.max(value1, value2), value3));
+
+            double delta0 = value0 - shift, delta1 = value1 - shift, delta2 = value2 - shift, delta3 = value3 - shift;
+            sum0 += delta0;
+            sum1 += delta1;
+            sum2 += delta2;
+            sum3 += delta3;
+            square0 += delta0 * delta0;
+            square1 += delta1 * delta1;
+            square2 += delta2 * delta2;
+            square3 += delta3 * delta3;
+        }
+
+        combine(new double[]{sum0, sum1, sum2, sum3}, new double[]{square0, square1, square2, square3},
+                values, i, size, shift, min, max, moments);
+    }
+
+    // Folds the lanes in a fixed order and adds the tail, shared by the scalar and the vector pass
+    static void combine(double[] sums, double[] squares, double[] values, int from, int size, double shift,
+                        double min, double max, double[] moments) {
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int lane = 0; lane < LANES; lane++) {
+            sum += sums[lane];
+            sumOfSquares += squares[lane];
+        }
+
+        for (int i = from; i < size; i++) {
+            double value = values[i];
+            double delta = value - shift;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += delta;
+            sumOfSquares += delta * delta;
+        }
+
+        moments[0] = min;
+        moments[1] = max;
+        moments[2] = sum;
+        moments[3] = sumOfSquares;
+    }
+
+    private static double[] copy(double[] values, int size) {
+        double[] scratch = SCRATCH.get();
+        if (scratch.length < size) {
+            scratch = new double[Math.max(size, scratch.length << 1)];
+            SCRATCH.set(scratch);
+        }
+        System.arraycopy(values, 0, scratch, 0, size);
+        return scratch;
+    }
+
+    private static int rank(int size, double fraction) {
+        return (int) (fraction * (size - 1));
+    }
+
+    // Interpolates between the reading at rank and the next one up, both already in place after select
+    private static double percentile(double[] selected, int size, double fraction, int rank, int upper) {
+        double lower = selected[rank];
+        double weight = fraction * (size - 1) - rank;
+        if (weight == 0 || rank + 1 >= size) {
+            return lower;
+        }
+
+        double next = selected[rank + 1];
+        for (int i = rank + 2; i <= upper; i++) {
+            next = Math.min(next, selected[i]);
+        }
+        return lower + weight * (next - lower);
+    }
+
+    // Moves the k-th smallest reading of [from, to) to index k, smaller ones before it and larger ones after it
+    private static void select(double[] values, int from, int to, int k) {
+        if (k < from || k >= to) {
+            return;
+        }
+
+        int left = from;
+        int right = to - 1;
+        while (right - left > INSERTION_SORT_THRESHOLD) {
+            // Median of three as pivot, which also leaves a sentinel on both ends for the scans below
+            int middle = (left + right) >>> 1;
+            if (values[middle] < values[left]) {
+                swap(values, left, middle);
+            }
+            if (values[right] < values[left]) {
+                swap(values, left, right);
+            }
+            if (values[right] < values[middle]) {
+                swap(values, middle, right);
+            }
+            double pivot = values[middle];
+
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (pivot < values[j]) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(values, i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                // Between j and i everything equals the pivot
+                return;
+            }
+        }
+
+        for (int i = left + 1; i <= right; i++) {
+            double value = values[i];
+            int j = i - 1;
+            while (j >= left && value < values[j]) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+    }
+
+    private static void swap(double[] values, int i, int j) {
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    private static boolean vectorMomentsAvailable() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            // Touch the species once so a broken incubator module falls back here and not on the first item
+            return VectorMoments.LANES == LANES;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package xyz.sadiulhakim.basic_project.config;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamSupport;
+import xyz.sadiulhakim.basic_project.pojo.AnomalyType;
+import xyz.sadiulhakim.basic_project.pojo.DataAnomaly;
+import xyz.sadiulhakim.basic_project.pojo.SensorData;
+
+/**
+ * Flags a day whose minimum or maximum lies too far from what the previous days looked like.
+ * <p>
+ * For both series it keeps the last {@code windowDays} days in a ring buffer. Each day is scored against the window
+ * before it is added, the score (severity) is the z-score {@code |value - mean| / stddev} over the window. A day is
+ * reported when the score reaches {@code threshold}, and the series that is further off wins when both do. Nothing is
+ * reported while the window holds fewer than {@code windowDays} days.
+ * <p>
+ * The window is {@code windowDays} doubles per series no matter how long the series is, and scoring a day costs
+ * {@code windowDays} steps. Mean and deviation are summed oldest day first on every item instead of kept as running
+ * sums, so a score depends only on the days in the window and not on how many days came before them. It is saved to
+ * the step execution context on every chunk, so a restart continues with exactly the window the failed run had
+ * committed. Items must come in date order through one instance, a partitioned step needs one instance per partition.
+ * Such an instance is given the {@code windowDays} days in front of its partition through {@link #warmUp} first, which
+ * makes its scores the same as those of a sequential run.
+ */
+public class SlidingWindowAnomalyProcessor extends ItemStreamSupport implements ItemProcessor<SensorData, DataAnomaly> {
+
+    private static final String DAYS = "days";
+    private static final String MIN_WINDOW = "min.window";
+    private static final String MAX_WINDOW = "max.window";
+
+    private final int windowDays;
+    private final double threshold;
+
+    // Days added so far, the next one goes to slot days % windowDays which holds the oldest day of a full window
+    private long days;
+    private final double[] minWindow;
+    private final double[] maxWindow;
+
+    public SlidingWindowAnomalyProcessor(int windowDays, double threshold) {
+        if (windowDays < 2) {
+            throw new IllegalArgumentException("Window must span at least 2 days, got " + windowDays);
+        }
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive, got " + threshold);
+        }
+        this.windowDays = windowDays;
+        this.threshold = threshold;
+        this.minWindow = new double[windowDays];
+        this.maxWindow = new double[windowDays];
+        setName("slidingWindowAnomalyProcessor");
+    }
+
+    @Override
+    public DataAnomaly process(SensorData item) throws Exception {
+        if (days < windowDays) {
+            add(item);
+            return null;
+        }
+
+        double minScore = score(minWindow, item.getMin());
+        double maxScore = score(maxWindow, item.getMax());
+        add(item);
+
+        if (Math.max(minScore, maxScore) < threshold) {
+            return null;
+        }
+        return minScore >= maxScore
+                ? new DataAnomaly(item.getDate(), AnomalyType.MINIMUM, item.getMin(), minScore)
+                : new DataAnomaly(item.getDate(), AnomalyType.MAXIMUM, item.getMax(), maxScore);
+    }
+
+    // Adds a day that lies before the items to process without scoring it, before the step opens the processor
+    public void warmUp(SensorData item) {
+        add(item);
+    }
+
+    private void add(SensorData item) {
+        int slot = (int) (days % windowDays);
+        minWindow[slot] = item.getMin();
+        maxWindow[slot] = item.getMax();
+        days++;
+    }
+
+    // Only called on a full window
+    private double score(double[] window, double value) {
+        int oldest = (int) (days % windowDays);
+
+        double sum = 0;
+        for (int i = 0; i < windowDays; i++) {
+            sum += window[(oldest + i) % windowDays];
+        }
+        double mean = sum / windowDays;
+
+        double squares = 0;
+        for (int i = 0; i < windowDays; i++) {
+            double difference = window[(oldest + i) % windowDays] - mean;
+            squares += difference * difference;
+        }
+        double stddev = Math.sqrt(squares / windowDays);
+
+        return stddev > 0 ? Math.abs(value - mean) / stddev : 0;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+
+        // Nothing saved yet, keep the window warmUp has filled
+        if (!executionContext.containsKey(getExecutionContextKey(DAYS))) {
+            return;
+        }
+
+        days = executionContext.getLong(getExecutionContextKey(DAYS));
+        restore((double[]) executionContext.get(getExecutionContextKey(MIN_WINDOW)), minWindow);
+        restore((double[]) executionContext.get(getExecutionContextKey(MAX_WINDOW)), maxWindow);
+    }
+
+    private void restore(double[] saved, double[] window) {
+        if (saved == null || saved.length != windowDays) {
+            throw new ItemStreamException("Saved anomaly window does not span the configured " + windowDays + " days");
+        }
+        System.arraycopy(saved, 0, window, 0, windowDays);
+    }
+
+    // Called after the chunk was written, so the window matches the items the reader has committed
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        executionContext.putLong(getExecutionContextKey(DAYS), days);
+        executionContext.put(getExecutionContextKey(MIN_WINDOW), minWindow.clone());
+        executionContext.put(getExecutionContextKey(MAX_WINDOW), maxWindow.clone());
+    }
+}
@@ -1,15 +1,23 @@
 package xyz.sadiulhakim.basic_project.config;
 
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemWriteListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.configuration.support.DefaultBatchConfiguration;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
-import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.item.file.FlatFileItemWriter;
-import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
+import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
+import org.springframework.batch.item.file.transform.LineAggregator;
 import org.springframework.batch.item.xml.StaxEventItemReader;
 import org.springframework.batch.item.xml.StaxEventItemWriter;
 import org.springframework.batch.item.xml.builder.StaxEventItemReaderBuilder;
@@ -20,10 +28,25 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.WritableResource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.oxm.Marshaller;
 import org.springframework.transaction.PlatformTransactionManager;
 import xyz.sadiulhakim.basic_project.pojo.DataAnomaly;
 import xyz.sadiulhakim.basic_project.pojo.RawDailySensorData;
 import xyz.sadiulhakim.basic_project.pojo.SensorData;
+import xyz.sadiulhakim.basic_project.pojo.SensorDataWithAnomaly;
+import xyz.sadiulhakim.batch_commons.file.ByteRangePartitioner;
+import xyz.sadiulhakim.batch_commons.file.CompressedItemWriter;
+import xyz.sadiulhakim.batch_commons.file.CompressedLineItemReader;
+import xyz.sadiulhakim.batch_commons.file.CompressedResource;
+import xyz.sadiulhakim.batch_commons.file.CompressionCodec;
+import xyz.sadiulhakim.batch_commons.file.MappedLineItemReader;
+import xyz.sadiulhakim.batch_commons.step.AdaptiveChunkSizePolicy;
+
+import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 
 @Configuration
 public class TemperatureSensorRootConfig extends DefaultBatchConfiguration {
@@ -37,14 +60,70 @@ public class TemperatureSensorRootConfig extends DefaultBatchConfiguration {
     @Value("file:D:\\Hakim_Code\\learn_batch\\staticFiles\\basic\\output\\HTE2NP.csv")
     WritableResource rawDailyOutputInCsv;
 
+    @Value("file:D:\\Hakim_Code\\learn_batch\\staticFiles\\basic\\output\\HTE2NP.bin")
+    WritableResource rawDailyOutputInBinary;
+
+    // Parse readings straight into a double[] instead of a boxed List<Double>
+    @Value("${sensor.mapper.primitive:false}")
+    boolean primitiveMapper;
+
+    // Run makeXmlStep and dataAnomalyStep as one pass over the raw file instead of round-tripping through the XML
+    @Value("${sensor.job.fused:false}")
+    boolean fusedJob;
+
+    // Bounds for the chunk size AdaptiveChunkSizePolicy is allowed to pick
+    @Value("${sensor.chunk.min-size:1}")
+    int minChunkSize;
+
+    @Value("${sensor.chunk.max-size:1000}")
+    int maxChunkSize;
+
+    // Number of byte range partitions the raw file is split into, 1 keeps the single threaded job
+    @Value("${sensor.partition.grid-size:1}")
+    int partitionGridSize;
+
+    // Score each day against a sliding window of the previous days instead of the fixed min/avg, avg/max ratio
+    @Value("${sensor.anomaly.sliding-window:false}")
+    boolean slidingWindowAnomaly;
+
+    @Value("${sensor.anomaly.window-days:30}")
+    int anomalyWindowDays;
+
+    // Distance from the window mean, in standard deviations, from which a day is reported
+    @Value("${sensor.anomaly.threshold:3.0}")
+    double anomalyThreshold;
+
+    // Flag a day whose lowest or highest reading lies far outside the 5th to 95th percentile range of its readings,
+    // instead of the fixed min/avg, avg/max ratio. The statistics then go into the XML (or binary) file as well.
+    @Value("${sensor.anomaly.spread:false}")
+    boolean spreadAnomaly;
+
+    // Format makeXmlStep hands over to dataAnomalyStep: xml or binary (SensorDataBinaryWriter)
+    @Value("${sensor.intermediate.format:xml}")
+    String intermediateFormat;
+
+    // With the binary format, still produce the XML afterwards through exportSensorXmlStep
+    @Value("${sensor.intermediate.export-xml:false}")
+    boolean exportXml;
+
     @Bean
     @Qualifier("rawDataReader")
-    FlatFileItemReader<RawDailySensorData> rawDataReader() {
-        return new FlatFileItemReaderBuilder<RawDailySensorData>()
-                .name("Raw Data Reader")
-                .resource(rawDailyInput)
-                .lineMapper(new SensorDataTextMapper())
-                .build();
+    ItemStreamReader<RawDailySensorData> rawDataReader() {
+
+        // Memory maps the raw file instead of going through a BufferedReader, in primitive mode the mapper
+        // parses the mapped bytes directly without creating a String per line.
+        // A .gz or .zst raw file is streamed through the codec instead, the mapper works the same on it.
+        if (CompressionCodec.of(rawDailyInput).isCompressed()) {
+            CompressedLineItemReader<RawDailySensorData> reader = new CompressedLineItemReader<>(new SensorDataTextMapper(primitiveMapper));
+            reader.setName("Raw Data Reader");
+            reader.setResource(rawDailyInput);
+            return reader;
+        }
+
+        MappedLineItemReader<RawDailySensorData> reader = new MappedLineItemReader<>(new SensorDataTextMapper(primitiveMapper));
+        reader.setName("Raw Data Reader");
+        reader.setResource(rawDailyInput);
+        return reader;
     }
 
     @Bean
@@ -52,19 +131,66 @@ public class TemperatureSensorRootConfig extends DefaultBatchConfiguration {
     StaxEventItemReader<SensorData> sensorDataReader() {
         return new StaxEventItemReaderBuilder<SensorData>()
                 .name("Sensor Data Reader")
-                .unmarshaller(SensorData.getMarshaller())
-                .resource(rawDailyOutput)
+                .unmarshaller(SensorData.getMarshaller(spreadAnomaly))
+                .resource(CompressedResource.of(rawDailyOutput))
                 .addFragmentRootElements(SensorData.ROOT_FRAGMENT_NAME)
                 .build();
     }
 
+    @Bean
+    @Qualifier("sensorDataBinaryReader")
+    SensorDataBinaryReader sensorDataBinaryReader() {
+        SensorDataBinaryReader reader = new SensorDataBinaryReader(rawDailyOutputInBinary);
+        reader.setName("Sensor Data Binary Reader");
+        return reader;
+    }
+
+    @Bean
+    @Qualifier("sensorDataBinaryWriter")
+    SensorDataBinaryWriter sensorDataBinaryWriter() {
+        SensorDataBinaryWriter writer = new SensorDataBinaryWriter(rawDailyOutputInBinary);
+        writer.setName("sensorDataBinaryWriter");
+        return writer;
+    }
+
+    private boolean binaryIntermediate() {
+        return "binary".equalsIgnoreCase(intermediateFormat);
+    }
+
     @Bean
     @Qualifier("sensorDataWriter")
-    StaxEventItemWriter<SensorData> sensorDataWriter() {
+    ItemStreamWriter<SensorData> sensorDataWriter() {
+        if (CompressionCodec.of(rawDailyOutput).isCompressed()) {
+
+            // Same document as StaxEventItemWriter writes, the fragments are marshalled one by one into the codec
+            CompressedItemWriter<SensorData> writer = new CompressedItemWriter<>(xmlFragment(SensorData.getMarshaller(spreadAnomaly)));
+            writer.setName("sensorDataWriter");
+            writer.setResource(rawDailyOutput);
+            writer.setLineSeparator("");
+            writer.setHeaderCallback(header -> header.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?><data>"));
+            writer.setFooterCallback(footer -> footer.write("</data>"));
+            return writer;
+        }
+        return sensorDataWriter(rawDailyOutput);
+    }
+
+    private static LineAggregator<SensorData> xmlFragment(Marshaller marshaller) {
+        return item -> {
+            StringWriter fragment = new StringWriter();
+            try {
+                marshaller.marshal(item, new StreamResult(fragment));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return fragment.toString();
+        };
+    }
+
+    private StaxEventItemWriter<SensorData> sensorDataWriter(WritableResource output) {
         return new StaxEventItemWriterBuilder<SensorData>()
                 .name("sensorDataWriter")
-                .marshaller(SensorData.getMarshaller())
-                .resource(rawDailyOutput)
+                .marshaller(SensorData.getMarshaller(spreadAnomaly))
+                .resource(output)
                 .rootTagName("data")
                 .overwriteOutput(true)
                 .build();
@@ -72,53 +198,268 @@ public class TemperatureSensorRootConfig extends DefaultBatchConfiguration {
 
     @Bean
     @Qualifier("dataAnomalyWriter")
-    FlatFileItemWriter<DataAnomaly> dataAnomalyWriter() {
+    ItemStreamWriter<DataAnomaly> dataAnomalyWriter() {
+        if (CompressionCodec.of(rawDailyOutputInCsv).isCompressed()) {
+            BeanWrapperFieldExtractor<DataAnomaly> fieldExtractor = new BeanWrapperFieldExtractor<>();
+            fieldExtractor.setNames(anomalyFields());
+            DelimitedLineAggregator<DataAnomaly> lineAggregator = new DelimitedLineAggregator<>();
+            lineAggregator.setDelimiter(",");
+            lineAggregator.setFieldExtractor(fieldExtractor);
+
+            CompressedItemWriter<DataAnomaly> writer = new CompressedItemWriter<>(lineAggregator);
+            writer.setName("dataAnomalyWriter");
+            writer.setResource(rawDailyOutputInCsv);
+            return writer;
+        }
+        return dataAnomalyWriter(rawDailyOutputInCsv, anomalyFields());
+    }
+
+    // Only the sliding window and the spread detector score a day, the threshold detector keeps the three columns it
+    // always had
+    private String[] anomalyFields() {
+        return slidingWindowAnomaly || spreadAnomaly
+                ? new String[]{"date", "type", "value", "severity"}
+                : new String[]{"date", "type", "value"};
+    }
+
+    private static FlatFileItemWriter<DataAnomaly> dataAnomalyWriter(WritableResource output, String[] fields) {
         return new FlatFileItemWriterBuilder<DataAnomaly>()
                 .name("dataAnomalyWriter")
-                .resource(rawDailyOutputInCsv)
+                .resource(output)
 //                .lineAggregator(item -> item.getDate() + "," + item.getType().name() + "," + item.getValue())
 //                .formatted()
 //                .format("%s,%s,%s")
                 .delimited() // you can use formatted here
                 .delimiter(",")
 //                .fieldExtractor(item -> new Object[]{item.getDate(), item.getType(), item.getValue()})
-                .names(new String[]{"date", "type", "value"}) // DataAnomaly fields name
+                .names(fields) // DataAnomaly fields name
                 .build();
     }
 
+    // A new instance for every step (execution), the sliding window keeps the state of one series
+    private ItemProcessor<SensorData, DataAnomaly> anomalyProcessor() {
+        if (slidingWindowAnomaly) {
+            return new SlidingWindowAnomalyProcessor(anomalyWindowDays, anomalyThreshold);
+        }
+        return new SensorDataAnomalyProcessor(spreadAnomaly);
+    }
+
     @Bean
     @Qualifier("makeXmlStep")
     Step makeXmlStep(JobRepository jobRepository, PlatformTransactionManager platformTransactionManager) {
+        AdaptiveChunkSizePolicy chunkSizePolicy = new AdaptiveChunkSizePolicy(minChunkSize, maxChunkSize);
         return new StepBuilder("makeXmlStep", jobRepository)
-                .<RawDailySensorData, SensorData>chunk(1, platformTransactionManager)
+                .<RawDailySensorData, SensorData>chunk(chunkSizePolicy, platformTransactionManager)
 
                 // Out FlatFileItemRead would read one line then
                 // convert it into RawDailySensorData and pass it to ItemProcessor then
                 // ItemProcessor would do some processing and convert that RawDailySensorData into SensorData then
-                // StaxEventItemWriter would write it to destination.
-                // So, here batch works with only one item/line at a time.
+                // StaxEventItemWriter (or SensorDataBinaryWriter in binary mode) would write it to destination.
+                // How many lines go into one chunk (transaction) is decided at runtime by AdaptiveChunkSizePolicy.
                 .reader(rawDataReader())
-                .processor(new RawToSensorDataItemProcessor())
-                .writer(sensorDataWriter())
+                .processor(new RawToSensorDataItemProcessor(spreadAnomaly))
+                .writer(binaryIntermediate() ? sensorDataBinaryWriter() : sensorDataWriter())
+                .listener((ChunkListener) chunkSizePolicy)
+                .listener((ItemWriteListener<Object>) chunkSizePolicy)
                 .build();
     }
 
     @Bean
     @Qualifier("dataAnomalyStep")
     Step dataAnomalyStep(JobRepository jobRepository, PlatformTransactionManager platformTransactionManager) {
+        AdaptiveChunkSizePolicy chunkSizePolicy = new AdaptiveChunkSizePolicy(minChunkSize, maxChunkSize);
         return new StepBuilder("dataAnomalyStep", jobRepository)
-                .<SensorData, DataAnomaly>chunk(1, platformTransactionManager)
-                .reader(sensorDataReader())
-                .processor(new SensorDataAnomalyProcessor())
+                .<SensorData, DataAnomaly>chunk(chunkSizePolicy, platformTransactionManager)
+                .reader(binaryIntermediate() ? sensorDataBinaryReader() : sensorDataReader())
+                .processor(anomalyProcessor())
                 .writer(dataAnomalyWriter())
+                .listener((ChunkListener) chunkSizePolicy)
+                .listener((ItemWriteListener<Object>) chunkSizePolicy)
                 .build();
     }
 
+    @Bean
+    @Qualifier("exportSensorXmlStep")
+    Step exportSensorXmlStep(JobRepository jobRepository, PlatformTransactionManager platformTransactionManager) {
+        AdaptiveChunkSizePolicy chunkSizePolicy = new AdaptiveChunkSizePolicy(minChunkSize, maxChunkSize);
+
+        // Turns the binary intermediate file into the XML for whoever still wants to look at it
+        return new StepBuilder("exportSensorXmlStep", jobRepository)
+                .<SensorData, SensorData>chunk(chunkSizePolicy, platformTransactionManager)
+                .reader(sensorDataBinaryReader())
+                .writer(sensorDataWriter())
+                .listener((ChunkListener) chunkSizePolicy)
+                .listener((ItemWriteListener<Object>) chunkSizePolicy)
+                .build();
+    }
+
+    @Bean
+    @Qualifier("fusedSensorDataStep")
+    Step fusedSensorDataStep(JobRepository jobRepository, PlatformTransactionManager platformTransactionManager) {
+        AdaptiveChunkSizePolicy chunkSizePolicy = new AdaptiveChunkSizePolicy(minChunkSize, maxChunkSize);
+        return new StepBuilder("fusedSensorDataStep", jobRepository)
+                .<RawDailySensorData, SensorDataWithAnomaly>chunk(chunkSizePolicy, platformTransactionManager)
+
+                // Each raw line is aggregated and checked for anomaly right away, then the fan-out writer
+                // writes the SensorData to the XML and the anomaly (if any) to the CSV in the same chunk.
+                .reader(rawDataReader())
+                .processor(new FusedSensorDataProcessor(new RawToSensorDataItemProcessor(spreadAnomaly), anomalyProcessor()))
+                .writer(new SensorDataFanOutWriter(sensorDataWriter(), dataAnomalyWriter()))
+                .listener((ChunkListener) chunkSizePolicy)
+                .listener((ItemWriteListener<Object>) chunkSizePolicy)
+                .build();
+    }
+
+    //+---------------------------------------------+--------------------------------------------+
+
+    @Bean
+    @StepScope
+    @Qualifier("partitionRawDataReader")
+    MappedLineItemReader<RawDailySensorData> partitionRawDataReader(
+            @Value("#{stepExecutionContext['startOffset']}") long startOffset,
+            @Value("#{stepExecutionContext['endOffset']}") long endOffset) {
+        MappedLineItemReader<RawDailySensorData> reader = new MappedLineItemReader<>(new SensorDataTextMapper(primitiveMapper));
+        reader.setName("partitionRawDataReader");
+        reader.setResource(rawDailyInput);
+        reader.setStartOffset(startOffset);
+        reader.setEndOffset(endOffset);
+        return reader;
+    }
+
+    @Bean
+    @StepScope
+    @Qualifier("partitionSensorDataWriter")
+    SensorDataFanOutWriter partitionSensorDataWriter(@Value("#{stepExecutionContext['partitionIndex']}") int partitionIndex)
+            throws IOException {
+
+        // Every partition writes its own part files, sensorOutputMergeStep glues them together in file order
+        return new SensorDataFanOutWriter(
+                sensorDataWriter(PartitionOutputMergeTasklet.partOf(rawDailyOutput, partitionIndex)),
+                dataAnomalyWriter(PartitionOutputMergeTasklet.partOf(rawDailyOutputInCsv, partitionIndex), anomalyFields())
+        );
+    }
+
+    @Bean
+    @StepScope
+    @Qualifier("partitionSensorDataProcessor")
+    FusedSensorDataProcessor partitionSensorDataProcessor(@Value("#{stepExecutionContext['startOffset']}") long startOffset)
+            throws Exception {
+
+        // Step scoped so concurrent partitions do not share one anomaly window
+        ItemProcessor<SensorData, DataAnomaly> anomalyProcessor = anomalyProcessor();
+        if (anomalyProcessor instanceof SlidingWindowAnomalyProcessor slidingWindow) {
+            warmUp(slidingWindow, startOffset);
+        }
+        return new FusedSensorDataProcessor(new RawToSensorDataItemProcessor(spreadAnomaly), anomalyProcessor);
+    }
+
+    // A sequential run reaches the partition's first day with the previous days in its window, so the window is
+    // filled with the anomalyWindowDays lines in front of the partition's byte range before the partition starts
+    private void warmUp(SlidingWindowAnomalyProcessor slidingWindow, long startOffset) throws Exception {
+        if (startOffset == 0) {
+            return;
+        }
+
+        MappedLineItemReader<RawDailySensorData> reader = new MappedLineItemReader<>(new SensorDataTextMapper(primitiveMapper));
+        reader.setName("slidingWindowWarmUpReader");
+        reader.setResource(rawDailyInput);
+        reader.setStartOffset(ByteRangePartitioner.lineStartBefore(rawDailyInput, startOffset, anomalyWindowDays));
+        reader.setEndOffset(startOffset);
+
+        RawToSensorDataItemProcessor sensorDataProcessor = new RawToSensorDataItemProcessor();
+        reader.open(new ExecutionContext());
+        try {
+            RawDailySensorData rawData;
+            while ((rawData = reader.read()) != null) {
+                SensorData sensorData = sensorDataProcessor.process(rawData);
+                if (sensorData != null) {
+                    slidingWindow.warmUp(sensorData);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Bean
+    @Qualifier("sensorPartitionWorkerStep")
+    Step sensorPartitionWorkerStep(JobRepository jobRepository, PlatformTransactionManager platformTransactionManager,
+                                   @Qualifier("partitionRawDataReader") MappedLineItemReader<RawDailySensorData> partitionRawDataReader,
+                                   @Qualifier("partitionSensorDataProcessor") FusedSensorDataProcessor partitionSensorDataProcessor,
+                                   @Qualifier("partitionSensorDataWriter") SensorDataFanOutWriter partitionSensorDataWriter) {
+        AdaptiveChunkSizePolicy chunkSizePolicy = new AdaptiveChunkSizePolicy(minChunkSize, maxChunkSize);
+        return new StepBuilder("sensorPartitionWorkerStep", jobRepository)
+                .<RawDailySensorData, SensorDataWithAnomaly>chunk(chunkSizePolicy, platformTransactionManager)
+                .reader(partitionRawDataReader)
+                .processor(partitionSensorDataProcessor)
+                .writer(partitionSensorDataWriter)
+                .listener((ChunkListener) chunkSizePolicy)
+                .listener((ItemWriteListener<Object>) chunkSizePolicy)
+                .build();
+    }
+
+    @Bean
+    @Qualifier("partitionedSensorDataStep")
+    Step partitionedSensorDataStep(JobRepository jobRepository,
+                                   @Qualifier("sensorPartitionWorkerStep") Step sensorPartitionWorkerStep) {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor();
+        taskExecutor.setVirtualThreads(true);
+
+        // Each partition is its own step execution with its own reader offset, so a restart only re-runs
+        // the partitions that did not complete.
+        return new StepBuilder("partitionedSensorDataStep", jobRepository)
+                .partitioner("sensorPartitionWorkerStep", new ByteRangePartitioner(rawDailyInput))
+                .step(sensorPartitionWorkerStep)
+                .gridSize(partitionGridSize)
+                .taskExecutor(taskExecutor)
+                .build();
+    }
+
+    @Bean
+    @Qualifier("sensorOutputMergeStep")
+    Step sensorOutputMergeStep(JobRepository jobRepository, PlatformTransactionManager platformTransactionManager) {
+        return new StepBuilder("sensorOutputMergeStep", jobRepository)
+                .tasklet(new PartitionOutputMergeTasklet(rawDailyOutput, rawDailyOutputInCsv, "data", partitionGridSize),
+                        platformTransactionManager)
+                .build();
+    }
+
+    // Byte ranges and part files only work on plain files, compressed sensor files go through the sequential steps
+    private boolean partitioned() {
+        return partitionGridSize > 1 && !CompressionCodec.of(rawDailyInput).isCompressed()
+                && !CompressionCodec.of(rawDailyOutput).isCompressed() && !CompressionCodec.of(rawDailyOutputInCsv).isCompressed();
+    }
+
     @Bean
     @Qualifier("sensorDataJob")
     Job sensorDataJob(JobRepository jobRepository,
                       @Qualifier("makeXmlStep") Step makeXmlStep,
-                      @Qualifier("dataAnomalyStep") Step dataAnomalyStep) {
+                      @Qualifier("dataAnomalyStep") Step dataAnomalyStep,
+                      @Qualifier("exportSensorXmlStep") Step exportSensorXmlStep,
+                      @Qualifier("fusedSensorDataStep") Step fusedSensorDataStep,
+                      @Qualifier("partitionedSensorDataStep") Step partitionedSensorDataStep,
+                      @Qualifier("sensorOutputMergeStep") Step sensorOutputMergeStep) {
+        if (partitioned()) {
+            return new JobBuilder("sensorDataJob", jobRepository)
+                    .start(partitionedSensorDataStep)
+                    .next(sensorOutputMergeStep)
+                    .build();
+        }
+
+        if (fusedJob) {
+            return new JobBuilder("sensorDataJob", jobRepository)
+                    .start(fusedSensorDataStep)
+                    .build();
+        }
+
+        if (binaryIntermediate() && exportXml) {
+            return new JobBuilder("sensorDataJob", jobRepository)
+                    .start(makeXmlStep)
+                    .next(dataAnomalyStep)
+                    .next(exportSensorXmlStep)
+                    .build();
+        }
+
         return new JobBuilder("sensorDataJob", jobRepository)
                 .start(makeXmlStep)
                 .next(dataAnomalyStep)
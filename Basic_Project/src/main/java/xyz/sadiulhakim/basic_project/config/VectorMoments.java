@@ -0,0 +1,45 @@
+package xyz.sadiulhakim.basic_project.config;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API version of SensorStatisticsKernel.accumulate. Only loaded when jdk.incubator.vector is
+// in the boot layer, SensorStatisticsKernel checks that before calling in here.
+final class VectorMoments {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_256;
+
+    static final int LANES = SPECIES.length();
+
+    private VectorMoments() {
+    }
+
+    static void accumulate(double[] values, int size, double shift, double[] moments) {
+        DoubleVector shifts = DoubleVector.broadcast(SPECIES, shift);
+        DoubleVector mins = DoubleVector.broadcast(SPECIES, values[0]);
+        DoubleVector maxs = mins;
+        DoubleVector sums = DoubleVector.zero(SPECIES);
+        DoubleVector squares = DoubleVector.zero(SPECIES);
+
+        int bound = SPECIES.loopBound(size);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            DoubleVector chunk = DoubleVector.fromArray(SPECIES, values, i);
+            DoubleVector delta = chunk.sub(shifts);
+            mins = mins.min(chunk);
+            maxs = maxs.max(chunk);
+            sums = sums.add(delta);
+            squares = squares.add(delta.mul(delta)); // not fma, it would round differently from the scalar pass
+        }
+
+        // Lanes are folded by SensorStatisticsKernel so both passes add them up in the same order
+        double[] laneSums = new double[LANES];
+        double[] laneSquares = new double[LANES];
+        sums.intoArray(laneSums, 0);
+        squares.intoArray(laneSquares, 0);
+
+        SensorStatisticsKernel.combine(laneSums, laneSquares, values, i, size, shift,
+                mins.reduceLanes(VectorOperators.MIN), maxs.reduceLanes(VectorOperators.MAX), moments);
+    }
+}
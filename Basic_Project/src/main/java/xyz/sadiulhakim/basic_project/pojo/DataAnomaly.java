@@ -6,6 +6,9 @@ public class DataAnomaly {
     private AnomalyType type;
     private double value;
 
+    // How far off the value is, in standard deviations of the sliding window. 0 when the fixed threshold flagged it.
+    private double severity;
+
     public DataAnomaly() {
     }
 
@@ -15,6 +18,11 @@ public class DataAnomaly {
         this.value = value;
     }
 
+    public DataAnomaly(String date, AnomalyType type, double value, double severity) {
+        this(date, type, value);
+        this.severity = severity;
+    }
+
     public String getDate() {
         return date;
     }
@@ -38,5 +46,12 @@ public class DataAnomaly {
     public void setValue(double value) {
         this.value = value;
     }
-}
 
+    public double getSeverity() {
+        return severity;
+    }
+
+    public void setSeverity(double severity) {
+        this.severity = severity;
+    }
+}
@@ -0,0 +1,72 @@
+package xyz.sadiulhakim.basic_project.pojo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Growable double[] holding the readings of one sensor line without boxing them into Double objects.
+// The backing array is reused between lines by calling clear(), only size() elements of values() are valid.
+public class MeasurementBuffer {
+
+    private static final int DEFAULT_CAPACITY = 32;
+
+    private double[] values;
+    private int size;
+
+    public MeasurementBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MeasurementBuffer(int initialCapacity) {
+        this.values = new double[Math.max(1, initialCapacity)];
+    }
+
+    private MeasurementBuffer(double[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    public void add(double value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length << 1);
+        }
+        values[size++] = value;
+    }
+
+    public double get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // Backing array, do not read past size()
+    public double[] values() {
+        return values;
+    }
+
+    // Detached copy trimmed to size(), so the item keeps its readings while this buffer is reused for the next line
+    public MeasurementBuffer copy() {
+        return new MeasurementBuffer(Arrays.copyOf(values, size), size);
+    }
+
+    public List<Double> toList() {
+        List<Double> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(values[i]);
+        }
+        return list;
+    }
+}
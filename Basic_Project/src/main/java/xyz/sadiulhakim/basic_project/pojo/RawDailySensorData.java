@@ -7,6 +7,9 @@ public class RawDailySensorData {
     private String date;
     private List<Double> measurements;
 
+    // Set instead of measurements when the line was parsed by the primitive mapper mode
+    private MeasurementBuffer readings;
+
     public RawDailySensorData() {
     }
 
@@ -15,14 +18,26 @@ public class RawDailySensorData {
         this.measurements = measurements;
     }
 
+    public RawDailySensorData(String date, MeasurementBuffer readings) {
+        this.date = date;
+        this.readings = readings;
+    }
+
     public String getDate() {
         return date;
     }
 
     public List<Double> getMeasurements() {
+        if (measurements == null && readings != null) {
+            return readings.toList();
+        }
         return measurements;
     }
 
+    public MeasurementBuffer getReadings() {
+        return readings;
+    }
+
     public void setDate(String date) {
         this.date = date;
     }
@@ -30,4 +45,8 @@ public class RawDailySensorData {
     public void setMeasurements(List<Double> measurements) {
         this.measurements = measurements;
     }
+
+    public void setReadings(MeasurementBuffer readings) {
+        this.readings = readings;
+    }
 }
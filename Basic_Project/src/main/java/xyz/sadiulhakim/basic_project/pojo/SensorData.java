@@ -13,6 +13,12 @@ public class SensorData {
     private double avg;
     private double max;
 
+    // Spread of the day's readings, set by RawToSensorDataItemProcessor for the spread anomaly check
+    private double stddev;
+    private double p05;
+    private double median;
+    private double p95;
+
     public static final String ROOT_FRAGMENT_NAME = "daily-data";
 
     public SensorData() {
@@ -26,6 +32,11 @@ public class SensorData {
     }
 
     public static XStreamMarshaller getMarshaller() {
+        return getMarshaller(false);
+    }
+
+    // Without statistics the XML keeps only date, min, avg and max
+    public static XStreamMarshaller getMarshaller(boolean statistics) {
         XStreamMarshaller marshaller = new XStreamMarshaller();
 
         Map<String, Class> aliases = new HashMap<>();
@@ -34,11 +45,18 @@ public class SensorData {
         aliases.put("min", Double.class);
         aliases.put("avg", Double.class);
         aliases.put("max", Double.class);
+        aliases.put("stddev", Double.class);
+        aliases.put("p05", Double.class);
+        aliases.put("median", Double.class);
+        aliases.put("p95", Double.class);
 
         ExplicitTypePermission typePermission = new ExplicitTypePermission(new Class[]{SensorData.class});
 
         marshaller.setAliases(aliases);
         marshaller.setTypePermissions(typePermission);
+        if (!statistics) {
+            marshaller.setOmittedFields(Map.of(SensorData.class, "stddev,p05,median,p95"));
+        }
         return marshaller;
     }
 
@@ -73,4 +91,27 @@ public class SensorData {
     public void setMax(double max) {
         this.max = max;
     }
+
+    public double getStddev() {
+        return stddev;
+    }
+
+    public double getP05() {
+        return p05;
+    }
+
+    public double getMedian() {
+        return median;
+    }
+
+    public double getP95() {
+        return p95;
+    }
+
+    public void setStatistics(double stddev, double p05, double median, double p95) {
+        this.stddev = stddev;
+        this.p05 = p05;
+        this.median = median;
+        this.p95 = p95;
+    }
 }
@@ -0,0 +1,8 @@
+package xyz.sadiulhakim.basic_project.pojo;
+
+// Result of the fused step: the aggregated day plus its anomaly, anomaly is null for a normal day
+public record SensorDataWithAnomaly(
+        SensorData sensorData,
+        DataAnomaly anomaly
+) {
+}
@@ -0,0 +1,59 @@
+package xyz.sadiulhakim.basic_project.pojo;
+
+// Summary of the readings of one day, computed by SensorStatisticsKernel.
+// Standard deviation is the population one, percentiles are linearly interpolated between the closest ranks.
+public class SensorStatistics {
+
+    private final int count;
+    private final double min;
+    private final double max;
+    private final double mean;
+    private final double stddev;
+    private final double p05;
+    private final double median;
+    private final double p95;
+
+    public SensorStatistics(int count, double min, double max, double mean, double stddev,
+                            double p05, double median, double p95) {
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.stddev = stddev;
+        this.p05 = p05;
+        this.median = median;
+        this.p95 = p95;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStddev() {
+        return stddev;
+    }
+
+    public double getP05() {
+        return p05;
+    }
+
+    public double getMedian() {
+        return median;
+    }
+
+    public double getP95() {
+        return p95;
+    }
+}
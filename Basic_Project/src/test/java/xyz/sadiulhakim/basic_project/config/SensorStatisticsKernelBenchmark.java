@@ -0,0 +1,101 @@
+package xyz.sadiulhakim.basic_project.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import xyz.sadiulhakim.basic_project.pojo.SensorStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the statistics of one row of readings: the boxed {@code List<Double>} loop
+ * RawToSensorDataItemProcessor used to run, the scalar and the Vector API pass of {@link SensorStatisticsKernel}, and
+ * the kernel with and without the percentiles.
+ * <p>
+ * Run {@link #main} from the IDE, or after {@code mvn test-compile}:
+ * <pre>
+ * java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main SensorStatisticsKernelBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class SensorStatisticsKernelBenchmark {
+
+    // Readings per row, a day of hourly readings up to a high frequency sensor
+    @Param({"24", "1000", "100000"})
+    int readings;
+
+    private double[] values;
+    private List<Double> measurements;
+    private final double[] moments = new double[4];
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        values = new double[readings];
+        measurements = new ArrayList<>(readings);
+        for (int i = 0; i < readings; i++) {
+            values[i] = 50 + random.nextDouble(40);
+            measurements.add(values[i]);
+        }
+    }
+
+    // What RawToSensorDataItemProcessor did before the kernel, with the max taken by Math.max
+    @Benchmark
+    public double boxedLoop() {
+        double min = measurements.getFirst();
+        double max = min;
+        double sum = 0;
+        for (double measurement : measurements) {
+            min = Math.min(min, measurement);
+            max = Math.max(max, measurement);
+            sum += measurement;
+        }
+        return min + max + sum / measurements.size();
+    }
+
+    @Benchmark
+    public double[] scalarPass() {
+        SensorStatisticsKernel.accumulate(values, readings, values[0], moments);
+        return moments;
+    }
+
+    @Benchmark
+    public double[] vectorPass() {
+        VectorMoments.accumulate(values, readings, values[0], moments);
+        return moments;
+    }
+
+    // Single pass on whichever of the two is available, no percentiles
+    @Benchmark
+    public SensorStatistics kernelMoments() {
+        return SensorStatisticsKernel.moments(values, readings);
+    }
+
+    @Benchmark
+    public SensorStatistics kernelWithPercentiles() {
+        return SensorStatisticsKernel.compute(values, readings);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SensorStatisticsKernelBenchmark.class.getSimpleName()).build()).run();
+    }
+}
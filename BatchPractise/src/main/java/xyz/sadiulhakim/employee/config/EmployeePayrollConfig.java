@@ -1,14 +1,22 @@
 package xyz.sadiulhakim.employee.config;
 
 import org.springframework.batch.core.*;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
-import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
+import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.batch.item.json.JacksonJsonObjectMarshaller;
 import org.springframework.batch.item.json.builder.JsonFileItemWriterBuilder;
@@ -18,14 +26,21 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.WritableResource;
-import org.springframework.core.task.TaskExecutor;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 import xyz.sadiulhakim.employee.pojo.Employee;
 import xyz.sadiulhakim.employee.pojo.HighPaidEmployee;
 import xyz.sadiulhakim.employee.pojo.Salary;
+import xyz.sadiulhakim.batch_commons.file.ByteRangePartitioner;
+import xyz.sadiulhakim.reader.CompiledRecordFieldSetMapper;
+import xyz.sadiulhakim.batch_commons.file.CompressedItemWriter;
+import xyz.sadiulhakim.batch_commons.file.CompressedLineItemReader;
+import xyz.sadiulhakim.batch_commons.file.CompressionCodec;
+import xyz.sadiulhakim.batch_commons.file.MappedLineItemReader;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.math.BigDecimal;
 
 @Configuration
 public class EmployeePayrollConfig {
@@ -39,56 +54,111 @@ public class EmployeePayrollConfig {
     @Value("file:D:\\Hakim_Code\\learn_batch\\staticFiles\\employee\\High Paid Employee.json")
     private WritableResource highPaidEmployee;
 
-    @Bean
-    TaskExecutor employeeTaskExecutor() {
-        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
-        taskExecutor.setThreadFactory(Thread.ofVirtual().factory());
-        return taskExecutor;
-    }
+    // Number of byte range partitions Employee.csv is split into, 1 keeps the single threaded payrollCalculatorStep
+    @Value("${payroll.partition.grid-size:1}")
+    private int payrollGridSize;
+
+    // Load Salary.csv into the salary table with COPY (PostgreSQL) or multi-row inserts instead of one insert per row
+    @Value("${payroll.salary.bulk-load:false}")
+    private boolean salaryBulkLoad;
 
     @Bean
     @Qualifier("employeeItemReader")
     ItemReader<Employee> employeeItemReader() {
-        return new FlatFileItemReaderBuilder<Employee>()
-                .name("employeeReader")
-                .resource(employee)
-                .delimited()
-                .delimiter(",")
-                .names("name", "department", "hoursWorked", "hourlyRate", "bonus", "deductions")
-                .targetType(Employee.class)
-                .linesToSkip(1)
-                .build();
+
+        // Memory mapped instead of FlatFileItemReader's BufferedReader, the line is tokenized the same way
+        return lineReader("employeeReader", employee, 1,
+                delimitedLineMapper(Employee.class, "name", "department", "hoursWorked", "hourlyRate", "bonus", "deductions"));
+    }
+
+    @Bean
+    @StepScope
+    @Qualifier("partitionEmployeeItemReader")
+    MappedLineItemReader<Employee> partitionEmployeeItemReader(
+            @Value("#{stepExecutionContext['partitionIndex']}") int partitionIndex,
+            @Value("#{stepExecutionContext['startOffset']}") long startOffset,
+            @Value("#{stepExecutionContext['endOffset']}") long endOffset) {
+        MappedLineItemReader<Employee> reader = new MappedLineItemReader<>(
+                delimitedLineMapper(Employee.class, "name", "department", "hoursWorked", "hourlyRate", "bonus", "deductions"));
+        reader.setName("partitionEmployeeReader");
+        reader.setResource(employee);
+        reader.setStartOffset(startOffset);
+        reader.setEndOffset(endOffset);
+
+        // Only the first range starts with the header line
+        reader.setLinesToSkip(partitionIndex == 0 ? 1 : 0);
+        return reader;
     }
 
     @Bean
     @Qualifier("calculatedSalaryReader")
     ItemReader<Salary> calculatedSalaryReader() {
-        return new FlatFileItemReaderBuilder<Salary>()
-                .name("calculatedSalaryReader")
-                .resource(salary)
-                .delimited()
-                .delimiter(",")
-                .names("name", "department", "salary", "totalSalarySoFar")
-                .targetType(Salary.class)
-                .build();
+        return lineReader("calculatedSalaryReader", salary, 0,
+                delimitedLineMapper(Salary.class, "name", "department", "salary", "totalSalarySoFar"));
+    }
+
+    // A .gz or .zst file is streamed through the codec, a plain one is memory mapped
+    private static <T> ItemStreamReader<T> lineReader(String name, Resource resource, int linesToSkip, LineMapper<T> lineMapper) {
+        if (CompressionCodec.of(resource).isCompressed()) {
+            CompressedLineItemReader<T> reader = new CompressedLineItemReader<>(lineMapper);
+            reader.setName(name);
+            reader.setResource(resource);
+            reader.setLinesToSkip(linesToSkip);
+            return reader;
+        }
+
+        MappedLineItemReader<T> reader = new MappedLineItemReader<>(lineMapper);
+        reader.setName(name);
+        reader.setResource(resource);
+        reader.setLinesToSkip(linesToSkip);
+        return reader;
+    }
+
+    // Same line mapper FlatFileItemReaderBuilder builds for .delimited().names(...).targetType(record), except that the
+    // record is created through a method handle prepared once instead of RecordFieldSetMapper's per line reflection
+    private static <T> LineMapper<T> delimitedLineMapper(Class<T> targetType, String... names) {
+        DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer(",");
+        tokenizer.setNames(names);
+
+        DefaultLineMapper<T> lineMapper = new DefaultLineMapper<>();
+        lineMapper.setLineTokenizer(tokenizer);
+        lineMapper.setFieldSetMapper(new CompiledRecordFieldSetMapper<>(targetType, names));
+        return lineMapper;
     }
 
     @Bean
     @Qualifier("calculatedSalaryWriter")
     ItemWriter<Salary> calculatedSalaryWriter(DataSource dataSource) {
+        if (salaryBulkLoad) {
+            return new SalaryBulkLoadWriter(dataSource);
+        }
+
         return new JdbcBatchItemWriterBuilder<Salary>()
                 .dataSource(dataSource)
                 .itemPreparedStatementSetter((item, ps) -> {
                     ps.setString(1, item.name());
                     ps.setString(2, item.department());
-                    ps.setDouble(3, item.salary());
+                    ps.setBigDecimal(3, item.salary());
                 })
                 .sql("insert into salary(name,department,salary) values(?,?,?)")
                 .build();
     }
 
     @Bean
-    ItemWriter<Salary> salaryItemWriter() {
+    ItemStreamWriter<Salary> salaryItemWriter() {
+        if (CompressionCodec.of(salary).isCompressed()) {
+            BeanWrapperFieldExtractor<Salary> fieldExtractor = new BeanWrapperFieldExtractor<>();
+            fieldExtractor.setNames(new String[]{"name", "department", "salary", "totalSalarySoFar"});
+            DelimitedLineAggregator<Salary> lineAggregator = new DelimitedLineAggregator<>();
+            lineAggregator.setDelimiter(",");
+            lineAggregator.setFieldExtractor(fieldExtractor);
+
+            CompressedItemWriter<Salary> writer = new CompressedItemWriter<>(lineAggregator);
+            writer.setName("salaryWriter");
+            writer.setResource(salary);
+            return writer;
+        }
+
         return new FlatFileItemWriterBuilder<Salary>()
                 .name("salaryWriter")
                 .resource(salary)
@@ -99,7 +169,62 @@ public class EmployeePayrollConfig {
     }
 
     @Bean
-    ItemWriter<HighPaidEmployee> highPaidEmployeeWriter() {
+    @StepScope
+    @Qualifier("partitionSalaryItemWriter")
+    FlatFileItemWriter<Salary> partitionSalaryItemWriter(@Value("#{stepExecutionContext['partitionIndex']}") int partitionIndex)
+            throws IOException {
+
+        // totalSalarySoFar of the partition's own rows, salaryPrefixSumStep adds what the partitions before it add up to
+        return new FlatFileItemWriterBuilder<Salary>()
+                .name("partitionSalaryWriter")
+                .resource(SalaryPrefixSumTasklet.partOf(salary, partitionIndex))
+                .delimited()
+                .delimiter(",")
+                .names("name", "department", "salary", "totalSalarySoFar")
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    @Qualifier("partitionHighPaidEmployeeWriter")
+    FlatFileItemWriter<HighPaidEmployee> partitionHighPaidEmployeeWriter(
+            @Value("#{stepExecutionContext['partitionIndex']}") int partitionIndex) throws IOException {
+
+        // The objects as JsonFileItemWriter writes them, without "[" and "]", salaryPrefixSumStep puts the parts inside
+        JacksonJsonObjectMarshaller<HighPaidEmployee> marshaller = new JacksonJsonObjectMarshaller<>();
+        return new FlatFileItemWriterBuilder<HighPaidEmployee>()
+                .name("partitionHighPaidEmployeeWriter")
+                .resource(SalaryPrefixSumTasklet.partOf(highPaidEmployee, partitionIndex))
+                .lineAggregator(item -> " " + marshaller.marshal(item))
+                .lineSeparator(SalaryPrefixSumTasklet.HIGH_PAID_SEPARATOR)
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    @Qualifier("partitionSalaryProcessor")
+    ItemProcessor<Employee, Salary> partitionSalaryProcessor(@Value("#{stepExecution}") StepExecution stepExecution) {
+        // The running total of the partition goes into its own ExecutionContext
+        SalaryProcessor salaryProcessor = new SalaryProcessor();
+        salaryProcessor.setStepExecution(stepExecution);
+        return salaryProcessor;
+    }
+
+    @Bean
+    ItemStreamWriter<HighPaidEmployee> highPaidEmployeeWriter() {
+        if (CompressionCodec.of(highPaidEmployee).isCompressed()) {
+
+            // Same layout as JsonFileItemWriter: "[", the objects indented by one space and separated by ",", "]"
+            JacksonJsonObjectMarshaller<HighPaidEmployee> marshaller = new JacksonJsonObjectMarshaller<>();
+            CompressedItemWriter<HighPaidEmployee> writer = new CompressedItemWriter<>(item -> " " + marshaller.marshal(item));
+            writer.setName("highPaidEmployeeWriter");
+            writer.setResource(highPaidEmployee);
+            writer.setLineSeparator("");
+            writer.setHeaderCallback(header -> header.write("[" + System.lineSeparator()));
+            writer.setItemSeparator("," + System.lineSeparator());
+            writer.setFooterCallback(footer -> footer.write(System.lineSeparator() + "]" + System.lineSeparator()));
+            return writer;
+        }
         return new JsonFileItemWriterBuilder<HighPaidEmployee>()
                 .name("highPaidEmployeeWriter")
                 .resource(highPaidEmployee)
@@ -115,7 +240,9 @@ public class EmployeePayrollConfig {
                 .<Employee, Salary>chunk(10_000, transactionManager)
                 .reader(employeeItemReader())
                 .processor(salaryProcessor)
-                .writer(salaryItemWriter())
+
+                // Salary.csv and the high paid JSON come out of the same read, the salary is calculated once
+                .writer(new PayrollFanOutWriter(salaryItemWriter(), highPaidEmployeeWriter()))
                 .listener(new StepExecutionListener() {
                     @Override
                     public void beforeStep(StepExecution stepExecution) {
@@ -128,22 +255,51 @@ public class EmployeePayrollConfig {
                         return StepExecutionListener.super.afterStep(stepExecution);
                     }
                 })
+                // Single threaded, SalaryProcessor's running total depends on the order of the rows.
+                // payroll.partition.grid-size > 1 runs partitionedPayrollStep instead.
                 .allowStartIfComplete(true)
-                .taskExecutor(employeeTaskExecutor())
                 .build();
     }
 
     @Bean
-    @Qualifier("highPaidEmployeeSeparator")
-    Step highPaidEmployeeSeparator(JobRepository jobRepository, PlatformTransactionManager transactionManager) {
-        HighPaidEmployeeProcessor processor = new HighPaidEmployeeProcessor();
-        return new StepBuilder("payrollCalculatorStep", jobRepository)
-                .<Employee, HighPaidEmployee>chunk(100, transactionManager)
-                .reader(employeeItemReader())
-                .processor(processor)
-                .writer(highPaidEmployeeWriter())
+    @Qualifier("payrollPartitionWorkerStep")
+    Step payrollPartitionWorkerStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
+                                    @Qualifier("partitionEmployeeItemReader") MappedLineItemReader<Employee> partitionEmployeeItemReader,
+                                    @Qualifier("partitionSalaryProcessor") ItemProcessor<Employee, Salary> partitionSalaryProcessor,
+                                    @Qualifier("partitionSalaryItemWriter") FlatFileItemWriter<Salary> partitionSalaryItemWriter,
+                                    @Qualifier("partitionHighPaidEmployeeWriter") FlatFileItemWriter<HighPaidEmployee> partitionHighPaidEmployeeWriter) {
+        return new StepBuilder("payrollPartitionWorkerStep", jobRepository)
+                .<Employee, Salary>chunk(10_000, transactionManager)
+                .reader(partitionEmployeeItemReader)
+                .processor(partitionSalaryProcessor)
+                .writer(new PayrollFanOutWriter(partitionSalaryItemWriter, partitionHighPaidEmployeeWriter))
+                .allowStartIfComplete(true)
+                .build();
+    }
+
+    @Bean
+    @Qualifier("partitionedPayrollStep")
+    Step partitionedPayrollStep(JobRepository jobRepository,
+                                @Qualifier("payrollPartitionWorkerStep") Step payrollPartitionWorkerStep) {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor();
+        taskExecutor.setVirtualThreads(true);
+
+        // Every partition parses its own byte range of Employee.csv and calculates the salaries on its own thread
+        return new StepBuilder("partitionedPayrollStep", jobRepository)
+                .partitioner("payrollPartitionWorkerStep", new ByteRangePartitioner(employee))
+                .step(payrollPartitionWorkerStep)
+                .gridSize(payrollGridSize)
+                .taskExecutor(taskExecutor)
+                .allowStartIfComplete(true)
+                .build();
+    }
+
+    @Bean
+    @Qualifier("salaryPrefixSumStep")
+    Step salaryPrefixSumStep(JobRepository jobRepository, PlatformTransactionManager transactionManager) {
+        return new StepBuilder("salaryPrefixSumStep", jobRepository)
+                .tasklet(new SalaryPrefixSumTasklet(salary, highPaidEmployee, "payrollPartitionWorkerStep"), transactionManager)
                 .allowStartIfComplete(true)
-                .taskExecutor(employeeTaskExecutor())
                 .build();
     }
 
@@ -163,16 +319,30 @@ public class EmployeePayrollConfig {
     @Qualifier("salaryCalculatorJob")
     Job salaryCalculatorJob(JobRepository jobRepository,
                             @Qualifier("payrollCalculatorStep") Step payrollCalculatorStep,
-                            @Qualifier("highPaidEmployeeSeparator") Step highPaidEmployeeSeparator,
+                            @Qualifier("partitionedPayrollStep") Step partitionedPayrollStep,
+                            @Qualifier("salaryPrefixSumStep") Step salaryPrefixSumStep,
                             @Qualifier("salarySavingStep") Step salarySavingStep
     ) {
+        if (partitioned()) {
+            return new JobBuilder("salaryCalculatorJob", jobRepository)
+                    .start(partitionedPayrollStep)
+                    .next(salaryPrefixSumStep)
+                    .next(salarySavingStep)
+                    .build();
+        }
+
         return new JobBuilder("salaryCalculatorJob", jobRepository)
                 .start(payrollCalculatorStep)
-                .next(highPaidEmployeeSeparator)
                 .next(salarySavingStep)
                 .build();
     }
 
+    // Byte ranges and part files only work on plain files, compressed payroll files go through payrollCalculatorStep
+    private boolean partitioned() {
+        return payrollGridSize > 1 && !CompressionCodec.of(employee).isCompressed()
+                && !CompressionCodec.of(salary).isCompressed() && !CompressionCodec.of(highPaidEmployee).isCompressed();
+    }
+
     private static class SalaryProcessor implements ItemProcessor<Employee, Salary> {
 
         private StepExecution stepExecution;
@@ -182,28 +352,17 @@ public class EmployeePayrollConfig {
             if (stepExecution == null)
                 throw new RuntimeException("StepExecution is not set in SalaryProcessor.");
 
-            double totalSalarySoFar = stepExecution.getExecutionContext().getDouble("totalSalarySoFar", 0d);
-            double salary = item.calculateSalary();
+            // Kept in cents, adding them up is exact and does not depend on where the rows are split
+            long totalSalarySoFar = stepExecution.getExecutionContext().getLong(SalaryPrefixSumTasklet.TOTAL_SALARY_SO_FAR, 0L);
+            BigDecimal salary = item.calculateSalary();
+            long newTotal = Math.addExact(totalSalarySoFar, SalaryPrefixSumTasklet.toCents(salary));
 
-            stepExecution.getExecutionContext().putDouble("totalSalarySoFar", (salary + totalSalarySoFar));
-            return new Salary(item.name(), item.department(), salary, (salary + totalSalarySoFar));
+            stepExecution.getExecutionContext().putLong(SalaryPrefixSumTasklet.TOTAL_SALARY_SO_FAR, newTotal);
+            return new Salary(item.name(), item.department(), salary, SalaryPrefixSumTasklet.toAmount(newTotal));
         }
 
         public void setStepExecution(StepExecution stepExecution) {
             this.stepExecution = stepExecution;
         }
     }
-
-    private static class HighPaidEmployeeProcessor implements ItemProcessor<Employee, HighPaidEmployee> {
-
-        @Override
-        public HighPaidEmployee process(Employee item) throws Exception {
-            if (item.calculateSalary() > 5_000) {
-                return new HighPaidEmployee(item.name(), item.department(), item.calculateSalary());
-            }
-
-            return null;
-        }
-
-    }
 }
@@ -0,0 +1,64 @@
+package xyz.sadiulhakim.employee.config;
+
+import org.springframework.batch.item.*;
+import xyz.sadiulhakim.employee.pojo.HighPaidEmployee;
+import xyz.sadiulhakim.employee.pojo.Salary;
+
+import java.math.BigDecimal;
+
+// Writes every calculated salary to Salary.csv and the high paid ones to the JSON in the same chunk, so
+// Employee.csv is read and every salary calculated once for both outputs.
+// Both delegates keep their own restart state, this writer only forwards the ItemStream callbacks.
+public class PayrollFanOutWriter implements ItemStreamWriter<Salary> {
+
+    public static final BigDecimal HIGH_PAID_SALARY = BigDecimal.valueOf(5_000);
+
+    private final ItemStreamWriter<Salary> salaryWriter;
+    private final ItemStreamWriter<HighPaidEmployee> highPaidEmployeeWriter;
+
+    public PayrollFanOutWriter(ItemStreamWriter<Salary> salaryWriter,
+                               ItemStreamWriter<HighPaidEmployee> highPaidEmployeeWriter) {
+        this.salaryWriter = salaryWriter;
+        this.highPaidEmployeeWriter = highPaidEmployeeWriter;
+    }
+
+    public static boolean isHighPaid(BigDecimal salary) {
+        return salary.compareTo(HIGH_PAID_SALARY) > 0;
+    }
+
+    @Override
+    public void write(Chunk<? extends Salary> chunk) throws Exception {
+        Chunk<HighPaidEmployee> highPaidEmployees = new Chunk<>();
+        for (Salary item : chunk) {
+            if (isHighPaid(item.salary())) {
+                highPaidEmployees.add(new HighPaidEmployee(item.name(), item.department(), item.salary()));
+            }
+        }
+
+        salaryWriter.write(chunk);
+        if (!highPaidEmployees.isEmpty()) {
+            highPaidEmployeeWriter.write(highPaidEmployees);
+        }
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        salaryWriter.open(executionContext);
+        highPaidEmployeeWriter.open(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        salaryWriter.update(executionContext);
+        highPaidEmployeeWriter.update(executionContext);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        try {
+            salaryWriter.close();
+        } finally {
+            highPaidEmployeeWriter.close();
+        }
+    }
+}
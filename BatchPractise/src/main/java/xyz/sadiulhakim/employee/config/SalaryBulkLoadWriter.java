@@ -0,0 +1,153 @@
+package xyz.sadiulhakim.employee.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import xyz.sadiulhakim.employee.pojo.Salary;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a chunk of salaries in one round trip instead of one insert per row.
+ * <p>
+ * On PostgreSQL the chunk is streamed as CSV through {@code COPY salary(...) FROM STDIN}. Any other database (H2 in
+ * this project) gets multi-row {@code insert ... values (?,?,?),(?,?,?),...} statements of up to
+ * {@link #ROWS_PER_INSERT} rows. Both run on the connection of the chunk transaction, so a failed chunk is rolled
+ * back like with JdbcBatchItemWriter.
+ * <p>
+ * Every chunk is recorded in the Micrometer global registry, tagged with the path that loaded it:
+ * {@code payroll.salary.load} (time per chunk) and {@code payroll.salary.load.rate} (rows per second per chunk).
+ */
+public class SalaryBulkLoadWriter implements ItemWriter<Salary> {
+
+    public static final String COPY = "copy";
+    public static final String MULTI_ROW_INSERT = "multi-row-insert";
+
+    // 3 parameters a row keeps a full statement well below the parameter limits of the drivers
+    static final int ROWS_PER_INSERT = 1_000;
+
+    private static final String FULL_INSERT_SQL = insertSql(ROWS_PER_INSERT);
+
+    private static final String COPY_SQL = "COPY salary(name,department,salary) FROM STDIN WITH (FORMAT csv)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Decided on the first chunk from the connection metadata
+    private volatile String path;
+
+    public SalaryBulkLoadWriter(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void write(Chunk<? extends Salary> chunk) throws Exception {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        String usedPath = jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            if (COPY.equals(path(connection))) {
+                PostgresCopy.copy(connection, chunk.getItems());
+                return COPY;
+            }
+            insert(connection, chunk.getItems());
+            return MULTI_ROW_INSERT;
+        });
+        long nanos = System.nanoTime() - start;
+
+        Timer.builder("payroll.salary.load")
+                .description("Time to load one chunk of salaries")
+                .tag("path", usedPath)
+                .register(Metrics.globalRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("payroll.salary.load.rate")
+                .description("Salaries loaded per second, per chunk")
+                .baseUnit("rows/s")
+                .tag("path", usedPath)
+                .register(Metrics.globalRegistry)
+                .record(chunk.size() * 1e9 / Math.max(1, nanos));
+    }
+
+    private String path(Connection connection) throws SQLException {
+        if (path == null) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            path = "PostgreSQL".equalsIgnoreCase(product) ? COPY : MULTI_ROW_INSERT;
+        }
+        return path;
+    }
+
+    private static void insert(Connection connection, List<? extends Salary> items) throws SQLException {
+        for (int from = 0; from < items.size(); from += ROWS_PER_INSERT) {
+            int rows = Math.min(ROWS_PER_INSERT, items.size() - from);
+
+            // Every full statement has the same text, only the last one of the chunk can be shorter
+            try (PreparedStatement ps = connection.prepareStatement(rows == ROWS_PER_INSERT ? FULL_INSERT_SQL : insertSql(rows))) {
+                int parameter = 1;
+                for (int i = from; i < from + rows; i++) {
+                    Salary item = items.get(i);
+                    ps.setString(parameter++, item.name());
+                    ps.setString(parameter++, item.department());
+                    ps.setBigDecimal(parameter++, item.salary());
+                }
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(40 + rows * 8).append("insert into salary(name,department,salary) values ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?,?,?)" : ",(?,?,?)");
+        }
+        return sql.toString();
+    }
+
+    // Only loaded when the database is PostgreSQL
+    private static final class PostgresCopy {
+
+        private static void copy(Connection connection, List<? extends Salary> items) throws SQLException {
+            StringBuilder csv = new StringBuilder(items.size() * 48);
+            for (Salary item : items) {
+                quote(csv, item.name()).append(',');
+                quote(csv, item.department()).append(',');
+                csv.append(item.salary()).append('\n');
+            }
+
+            try {
+                new CopyManager(connection.unwrap(BaseConnection.class)).copyIn(COPY_SQL, new StringReader(csv.toString()));
+            } catch (IOException e) {
+                throw new SQLException("COPY into salary failed", e);
+            }
+        }
+
+        // Quoted CSV field, an empty unquoted field would be loaded as NULL
+        private static StringBuilder quote(StringBuilder csv, String value) {
+            if (value == null) {
+                return csv;
+            }
+            csv.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    csv.append('"');
+                }
+                csv.append(c);
+            }
+            return csv.append('"');
+        }
+    }
+}
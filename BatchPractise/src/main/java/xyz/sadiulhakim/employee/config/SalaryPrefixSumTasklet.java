@@ -0,0 +1,195 @@
+package xyz.sadiulhakim.employee.config;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.WritableResource;
+import xyz.sadiulhakim.batch_commons.file.ByteRangePartitioner;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Second stage of the parallel payroll. Every partition writes its rows with the running total of its own salaries
+// and leaves its sum in its ExecutionContext, because it does not know what the partitions before it add up to.
+// This step prefix-sums those sums into the offset of every partition, adds the offset to the running totals of a
+// partition's part (the parts on their own threads, the first one has no offset and is taken as it is) and
+// concatenates the parts into Salary.csv. Rows and salaries are not parsed again, only the running total column.
+// The high paid parts are JSON objects separated by "," and are concatenated between "[" and "]".
+// Totals and offsets are whole cents, so offset + sum within the partition is exactly the single threaded step's sum.
+public class SalaryPrefixSumTasklet implements Tasklet {
+
+    public static final String TOTAL_SALARY_SO_FAR = "totalSalarySoFarCents";
+    private static final int SCALE = 2;
+
+    private static final String PART_SUFFIX = ".part-";
+    private static final String OFFSET_SUFFIX = ".offset";
+
+    // What the partitions put between two high paid employees, also after the last one of a part
+    public static final String HIGH_PAID_SEPARATOR = "," + System.lineSeparator();
+
+    private final WritableResource salaryOutput;
+    private final WritableResource highPaidOutput;
+    private final String workerStepName;
+
+    public SalaryPrefixSumTasklet(WritableResource salaryOutput, WritableResource highPaidOutput, String workerStepName) {
+        this.salaryOutput = salaryOutput;
+        this.highPaidOutput = highPaidOutput;
+        this.workerStepName = workerStepName;
+    }
+
+    // Output file of one partition, next to the final output
+    public static WritableResource partOf(Resource output, int partitionIndex) throws IOException {
+        return new FileSystemResource(output.getFile().getPath() + PART_SUFFIX + String.format("%04d", partitionIndex));
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        StepExecution stepExecution = chunkContext.getStepContext().getStepExecution();
+        File salary = salaryOutput.getFile();
+
+        // Restart after the parts were already merged and removed
+        if (!partOf(salaryOutput, 0).exists() && salary.exists()) {
+            return RepeatStatus.FINISHED;
+        }
+
+        // This job execution's partitions, in file order
+        List<StepExecution> partitions = stepExecution.getJobExecution().getStepExecutions().stream()
+                .filter(execution -> execution.getStepName().startsWith(workerStepName + ":"))
+                .filter(execution -> execution.getExecutionContext().containsKey(ByteRangePartitioner.PARTITION_INDEX))
+                .sorted(Comparator.comparingInt(execution -> execution.getExecutionContext().getInt(ByteRangePartitioner.PARTITION_INDEX)))
+                .toList();
+
+        // Offset of a partition = sum of the salaries of all partitions before it
+        long[] offsets = new long[partitions.size()];
+        long totalSalarySoFar = 0;
+        long rows = 0;
+        for (int i = 0; i < partitions.size(); i++) {
+            offsets[i] = totalSalarySoFar;
+            totalSalarySoFar = Math.addExact(totalSalarySoFar, partitions.get(i).getExecutionContext().getLong(TOTAL_SALARY_SO_FAR, 0L));
+            rows += partitions.get(i).getWriteCount();
+        }
+
+        addOffsets(offsets);
+
+        Path salaryTmp = concatenate(salary, partitions.size(), i -> i == 0 ? partOf(salaryOutput, 0) : offsetPartOf(i), 0);
+        File highPaid = highPaidOutput.getFile();
+        Path highPaidTmp = concatenate(highPaid, partitions.size(), i -> partOf(highPaidOutput, i),
+                HIGH_PAID_SEPARATOR.length());
+
+        Files.move(salaryTmp, salary.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(highPaidTmp, highPaid.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        for (int i = 0; i < partitions.size(); i++) {
+            Files.deleteIfExists(partOf(salaryOutput, i).getFile().toPath());
+            Files.deleteIfExists(offsetPartOf(i).getFile().toPath());
+            Files.deleteIfExists(partOf(highPaidOutput, i).getFile().toPath());
+        }
+
+        contribution.incrementWriteCount(rows);
+        stepExecution.getExecutionContext().putLong(TOTAL_SALARY_SO_FAR, totalSalarySoFar);
+        return RepeatStatus.FINISHED;
+    }
+
+    // Rewrites the salary parts after the first one with their offset added, every part on its own thread
+    private void addOffsets(long[] offsets) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> rewrites = new ArrayList<>();
+            for (int i = 1; i < offsets.length; i++) {
+                int partition = i;
+                rewrites.add(executor.submit(() -> {
+                    addOffset(partOf(salaryOutput, partition).getFile().toPath(), offsetPartOf(partition).getFile().toPath(),
+                            offsets[partition]);
+                    return null;
+                }));
+            }
+            for (Future<?> rewrite : rewrites) {
+                rewrite.get();
+            }
+        }
+    }
+
+    private static void addOffset(Path part, Path offsetPart, long offset) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(part, StandardCharsets.UTF_8);
+             BufferedWriter out = Files.newBufferedWriter(offsetPart, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                // The running total is the last column of a part line
+                int totalStart = line.lastIndexOf(',') + 1;
+                out.write(line, 0, totalStart);
+                long total = Math.addExact(toCents(new BigDecimal(line.substring(totalStart))), offset);
+                out.write(toAmount(total).toPlainString());
+                out.newLine();
+            }
+        }
+    }
+
+    // Salaries have two decimals, setScale only adds zeros and throws if a value ever had more
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(SCALE).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    private WritableResource offsetPartOf(int partitionIndex) throws IOException {
+        return new FileSystemResource(partOf(salaryOutput, partitionIndex).getFile().getPath() + OFFSET_SUFFIX);
+    }
+
+    // The parts one after the other into a temporary file next to output. A JSON output gets the "[" and "]" of
+    // JsonFileItemWriter around them and the separator after the last object cut off.
+    private static Path concatenate(File output, int partitions, PartFile partFile, int trailingSeparator)
+            throws IOException {
+        Path tmp = output.toPath().resolveSibling(output.getName() + ".merging");
+        boolean json = trailingSeparator > 0;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (json) {
+                out.write(StandardCharsets.UTF_8.encode("[" + System.lineSeparator()));
+            }
+
+            long header = out.position();
+            for (int i = 0; i < partitions; i++) {
+                try (FileChannel in = FileChannel.open(partFile.of(i).getFile().toPath(), StandardOpenOption.READ)) {
+                    long position = 0;
+                    while (position < in.size()) {
+                        position += in.transferTo(position, in.size() - position, out);
+                    }
+                }
+            }
+
+            if (json) {
+                if (out.position() > header) {
+                    out.truncate(out.position() - trailingSeparator);
+                    out.position(out.size());
+                }
+                out.write(StandardCharsets.UTF_8.encode(System.lineSeparator() + "]" + System.lineSeparator()));
+            }
+        }
+        return tmp;
+    }
+
+    @FunctionalInterface
+    private interface PartFile {
+        WritableResource of(int partitionIndex) throws IOException;
+    }
+}
@@ -1,10 +1,10 @@
 package xyz.sadiulhakim.employee.controller;
 
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
 import org.springframework.batch.core.JobParametersInvalidException;
-import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
 import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
 import org.springframework.batch.core.repository.JobRestartException;
@@ -12,28 +12,34 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import xyz.sadiulhakim.batch_commons.launcher.JobStatus;
+import xyz.sadiulhakim.batch_commons.launcher.JobSubmissionService;
 
+import java.net.URI;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/employee")
 public class EmployeeController {
 
-    private final JobLauncher jobLauncher;
+    private final JobSubmissionService jobSubmissionService;
     private final Job salaryCalculatorJob;
 
-    public EmployeeController(JobLauncher jobLauncher, Job salaryCalculatorJob) {
-        this.jobLauncher = jobLauncher;
+    public EmployeeController(JobSubmissionService jobSubmissionService, Job salaryCalculatorJob) {
+        this.jobSubmissionService = jobSubmissionService;
         this.salaryCalculatorJob = salaryCalculatorJob;
     }
 
+    // Returns 202 with the execution id right away, progress is at /jobs/{executionId}
     @GetMapping("/calculate/salary")
-    ResponseEntity<?> calculateSalary() throws JobInstanceAlreadyCompleteException, JobExecutionAlreadyRunningException, JobParametersInvalidException, JobRestartException {
+    ResponseEntity<JobStatus> calculateSalary() throws JobInstanceAlreadyCompleteException, JobExecutionAlreadyRunningException, JobParametersInvalidException, JobRestartException {
         JobParameters parameters = new JobParametersBuilder()
                 .addString("id", UUID.randomUUID().toString())
                 .toJobParameters();
 
-        jobLauncher.run(salaryCalculatorJob, parameters);
-        return ResponseEntity.ok("Done");
+        JobExecution execution = jobSubmissionService.submit(salaryCalculatorJob, parameters);
+        return ResponseEntity.accepted()
+                .location(URI.create("/jobs/" + execution.getId()))
+                .body(JobStatus.of(execution));
     }
 }
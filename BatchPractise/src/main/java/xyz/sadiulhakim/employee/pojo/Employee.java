@@ -1,5 +1,8 @@
 package xyz.sadiulhakim.employee.pojo;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
 public record Employee(
         String name,
         String department,
@@ -9,7 +12,12 @@ public record Employee(
         double deductions
 ) {
 
-    public double calculateSalary() {
-        return (hoursWorked * hourlyRate) + bonus - deductions;
+    // Worked out on the decimal values of the columns and rounded to cents, so a salary is the same exact amount
+    // whichever thread or partition calculates it
+    public BigDecimal calculateSalary() {
+        return BigDecimal.valueOf(hoursWorked).multiply(BigDecimal.valueOf(hourlyRate))
+                .add(BigDecimal.valueOf(bonus))
+                .subtract(BigDecimal.valueOf(deductions))
+                .setScale(2, RoundingMode.HALF_UP);
     }
 }
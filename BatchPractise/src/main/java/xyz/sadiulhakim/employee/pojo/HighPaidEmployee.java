@@ -1,8 +1,10 @@
 package xyz.sadiulhakim.employee.pojo;
 
+import java.math.BigDecimal;
+
 public record HighPaidEmployee(
         String name,
         String department,
-        double salary
+        BigDecimal salary
 ) {
-}
+}
\ No newline at end of file
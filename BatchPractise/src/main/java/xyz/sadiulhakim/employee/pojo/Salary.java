@@ -1,9 +1,11 @@
 package xyz.sadiulhakim.employee.pojo;
 
+import java.math.BigDecimal;
+
 public record Salary(
         String name,
         String department,
-        double salary,
-        double totalSalarySoFar
+        BigDecimal salary,
+        BigDecimal totalSalarySoFar
 ) {
 }
\ No newline at end of file
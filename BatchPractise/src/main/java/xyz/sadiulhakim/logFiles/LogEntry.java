@@ -0,0 +1,10 @@
+package xyz.sadiulhakim.logFiles;
+
+// One parsed log line. timestamp and level are null for lines that do not start with them (stack traces and the like).
+public record LogEntry(
+        String file,
+        String timestamp,
+        String level,
+        String message
+) {
+}
@@ -0,0 +1,42 @@
+package xyz.sadiulhakim.logFiles;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import xyz.sadiulhakim.batch_commons.file.MappedLineItemReader;
+
+import javax.sql.DataSource;
+
+// Batch inserts the entries of a chunk and records how far the file has been read, both in the chunk transaction.
+// A failed chunk rolls back the two together, so the next run neither loses nor repeats a line.
+public class LogEntryWriter implements ItemWriter<LogEntry> {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LogFileOffsets offsets;
+    private final String path;
+    private final String fileKey;
+    private final MappedLineItemReader<LogEntry> reader;
+
+    public LogEntryWriter(DataSource dataSource, LogFileOffsets offsets, String path, String fileKey,
+                          MappedLineItemReader<LogEntry> reader) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.offsets = offsets;
+        this.path = path;
+        this.fileKey = fileKey;
+        this.reader = reader;
+    }
+
+    @Override
+    public void write(Chunk<? extends LogEntry> chunk) {
+        jdbcTemplate.batchUpdate("insert into log_entry(file,logged_at,level,message) values(?,?,?,?)",
+                chunk.getItems(), chunk.size(), (ps, item) -> {
+                    ps.setString(1, item.file());
+                    ps.setString(2, item.timestamp());
+                    ps.setString(3, item.level());
+                    ps.setString(4, item.message());
+                });
+
+        // The reader stops at the end of the chunk, its offset is the first byte that is not in the database yet
+        offsets.save(path, reader.getOffset(), fileKey);
+    }
+}
@@ -0,0 +1,42 @@
+package xyz.sadiulhakim.logFiles;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+// How far every log file has been ingested, kept in log_file_offset so it outlives the job instance.
+// LogEntryWriter moves the offset in the same transaction as the entries of the chunk, so the two never disagree.
+// The file key of the file the offset belongs to is kept with it, a rotated file gets a new key under the same path.
+public class LogFileOffsets {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LogFileOffsets(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public Map<String, Stored> findAll() {
+        Map<String, Stored> offsets = new HashMap<>();
+        jdbcTemplate.query("select path, byte_offset, file_key from log_file_offset",
+                rs -> {
+                    offsets.put(rs.getString(1), new Stored(rs.getLong(2), rs.getString(3)));
+                });
+        return offsets;
+    }
+
+    // A path is only ever written by its own partition, update-then-insert needs no lock
+    public void save(String path, long offset, String fileKey) {
+        int updated = jdbcTemplate.update("update log_file_offset set byte_offset = ?, file_key = ? where path = ?",
+                offset, fileKey, path);
+        if (updated == 0) {
+            jdbcTemplate.update("insert into log_file_offset(path, byte_offset, file_key) values(?,?,?)",
+                    path, offset, fileKey);
+        }
+    }
+
+    // fileKey is null for offsets saved before the key was stored
+    public record Stored(long offset, String fileKey) {
+    }
+}
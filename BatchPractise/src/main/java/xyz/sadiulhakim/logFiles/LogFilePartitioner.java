@@ -0,0 +1,112 @@
+package xyz.sadiulhakim.logFiles;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.core.io.Resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+// One partition per log file that has grown since the last run, covering the bytes [startOffset, endOffset) that
+// were appended in the meantime. endOffset stops after the last '\n', a line that is still being written is left for
+// the next run. A file whose key differs from the stored one was rotated (a new file under the same path), a file that
+// is shorter than its stored offset was truncated, both are read from the start. The key is the inode where the file
+// system has one and the creation time elsewhere. A rotation that copies and truncates in place keeps the key, it is
+// only noticed when the file has not grown past the stored offset again by the next run.
+// Files without new lines get no partition at all, so a run over unchanged files only stats them.
+// gridSize is ignored, the executor of the partitioned step bounds how many files are read at once.
+public class LogFilePartitioner implements Partitioner {
+
+    public static final String FILE = "file";
+    public static final String START_OFFSET = "startOffset";
+    public static final String END_OFFSET = "endOffset";
+    public static final String FILE_KEY = "fileKey";
+    private static final String PARTITION_NAME_PREFIX = "logFile-";
+
+    private final Callable<Resource[]> logFiles;
+    private final LogFileOffsets offsets;
+
+    public LogFilePartitioner(Callable<Resource[]> logFiles, LogFileOffsets offsets) {
+        this.logFiles = logFiles;
+        this.offsets = offsets;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, ExecutionContext> partitionMap = new LinkedHashMap<>();
+        Map<String, LogFileOffsets.Stored> stored = offsets.findAll();
+
+        try {
+            for (Resource resource : logFiles.call()) {
+                File file = resource.getFile();
+                String path = file.getAbsolutePath();
+                long length = file.length();
+                String fileKey = fileKey(file);
+                LogFileOffsets.Stored offset = stored.get(path);
+                long start = offset == null ? 0 : offset.offset();
+                if (start > length || offset != null && offset.fileKey() != null && !offset.fileKey().equals(fileKey)) {
+                    start = 0;
+                }
+
+                long end = lastLineEnd(file, start, length);
+                if (end <= start) {
+                    continue;
+                }
+
+                ExecutionContext executionContext = new ExecutionContext();
+                executionContext.putString(FILE, path);
+                executionContext.putLong(START_OFFSET, start);
+                executionContext.putLong(END_OFFSET, end);
+                executionContext.putString(FILE_KEY, fileKey);
+
+                // Named after the path, so a restart hands every file back to its own failed partition.
+                // The path itself may not fit in the step name column.
+                String name = UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8)).toString();
+                partitionMap.put(PARTITION_NAME_PREFIX + name, executionContext);
+            }
+        } catch (Exception e) {
+            throw new ItemStreamException("Could not partition the log files", e);
+        }
+
+        return partitionMap;
+    }
+
+    private static String fileKey(File file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        return attributes.fileKey() != null ? attributes.fileKey().toString() : attributes.creationTime().toString();
+    }
+
+    // Offset right after the last '\n' in [start, length), or start when there is no complete line
+    private static long lastLineEnd(File file, long start, long length) throws IOException {
+        if (length <= start) {
+            return start;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] buffer = new byte[8192];
+            long blockEnd = length;
+            while (blockEnd > start) {
+                long blockStart = Math.max(start, blockEnd - buffer.length);
+                int size = (int) (blockEnd - blockStart);
+                raf.seek(blockStart);
+                raf.readFully(buffer, 0, size);
+                for (int i = size - 1; i >= 0; i--) {
+                    if (buffer[i] == '\n') {
+                        return blockStart + i + 1;
+                    }
+                }
+                blockEnd = blockStart;
+            }
+        }
+        return start;
+    }
+}
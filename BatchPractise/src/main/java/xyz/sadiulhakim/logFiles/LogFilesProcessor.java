@@ -1,18 +1,109 @@
 package xyz.sadiulhakim.logFiles;
 
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import xyz.sadiulhakim.batch_commons.file.MappedLineItemReader;
 
+import javax.sql.DataSource;
 import java.io.IOException;
 
 @Configuration
 @EnableBatchProcessing
 public class LogFilesProcessor {
 
+    // How many log files are read at the same time, 0 means one per core
+    @Value("${logs.ingest.concurrency:0}")
+    private int concurrency;
+
     private Resource[] loadLogFiles() throws IOException {
         PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
         return resolver.getResources("file:F:\\Batch\\data-importer\\**\\*.log");
     }
+
+    @Bean
+    LogFileOffsets logFileOffsets(DataSource dataSource) {
+        return new LogFileOffsets(dataSource);
+    }
+
+    @Bean
+    @StepScope
+    @Qualifier("logFileReader")
+    MappedLineItemReader<LogEntry> logFileReader(@Value("#{stepExecutionContext['file']}") String file,
+                                                 @Value("#{stepExecutionContext['startOffset']}") long startOffset,
+                                                 @Value("#{stepExecutionContext['endOffset']}") long endOffset) {
+
+        // Only the bytes appended since the last run, a restart continues from the reader's own saved offset
+        MappedLineItemReader<LogEntry> reader = new MappedLineItemReader<>(new LogLineMapper(file));
+        reader.setName("logFileReader");
+        reader.setResource(new FileSystemResource(file));
+        reader.setStartOffset(startOffset);
+        reader.setEndOffset(endOffset);
+
+        // A log message may start with '#', every line is an entry
+        reader.setSkipComments(false);
+        return reader;
+    }
+
+    @Bean
+    @StepScope
+    @Qualifier("logEntryWriter")
+    LogEntryWriter logEntryWriter(DataSource dataSource, LogFileOffsets logFileOffsets,
+                                  @Value("#{stepExecutionContext['file']}") String file,
+                                  @Value("#{stepExecutionContext['fileKey']}") String fileKey,
+                                  @Qualifier("logFileReader") MappedLineItemReader<LogEntry> logFileReader) {
+        return new LogEntryWriter(dataSource, logFileOffsets, file, fileKey, logFileReader);
+    }
+
+    @Bean
+    @Qualifier("logFileIngestionWorkerStep")
+    Step logFileIngestionWorkerStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
+                                    @Qualifier("logFileReader") MappedLineItemReader<LogEntry> logFileReader,
+                                    @Qualifier("logEntryWriter") LogEntryWriter logEntryWriter) {
+        return new StepBuilder("logFileIngestionWorkerStep", jobRepository)
+                .<LogEntry, LogEntry>chunk(1_000, transactionManager)
+                .reader(logFileReader)
+                .writer(logEntryWriter)
+                .build();
+    }
+
+    @Bean
+    @Qualifier("logFileIngestionStep")
+    Step logFileIngestionStep(JobRepository jobRepository, LogFileOffsets logFileOffsets,
+                              @Qualifier("logFileIngestionWorkerStep") Step logFileIngestionWorkerStep) {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor();
+        taskExecutor.setVirtualThreads(true);
+
+        // Virtual threads are free, the limit is what keeps the files in flight (and their connections) to the cores
+        taskExecutor.setConcurrencyLimit(concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors());
+
+        // The files are resolved again on every run, new files are picked up and unchanged ones get no partition
+        return new StepBuilder("logFileIngestionStep", jobRepository)
+                .partitioner("logFileIngestionWorkerStep", new LogFilePartitioner(this::loadLogFiles, logFileOffsets))
+                .step(logFileIngestionWorkerStep)
+                .taskExecutor(taskExecutor)
+                .build();
+    }
+
+    @Bean
+    @Qualifier("logFileIngestionJob")
+    Job logFileIngestionJob(JobRepository jobRepository,
+                            @Qualifier("logFileIngestionStep") Step logFileIngestionStep) {
+        return new JobBuilder("logFileIngestionJob", jobRepository)
+                .start(logFileIngestionStep)
+                .build();
+    }
 }
@@ -0,0 +1,89 @@
+package xyz.sadiulhakim.logFiles;
+
+import xyz.sadiulhakim.batch_commons.file.CharSequenceLineMapper;
+
+import java.util.Set;
+
+// Splits "<timestamp> <LEVEL> <message>" lines, the usual logback / log4j layouts:
+//   2025-03-01 10:15:30.123  INFO 4242 --- [main] x.y.Service : Started
+//   2025-03-01T10:15:30.123+06:00 [WARN] Disk almost full
+// The timestamp may be a date and a time separated by a space. Anything that does not start with a digit is kept as
+// the message only. Works on the mapped bytes, the only Strings created are the three fields of the entry.
+public class LogLineMapper implements CharSequenceLineMapper<LogEntry> {
+
+    private static final Set<String> LEVELS = Set.of("TRACE", "DEBUG", "INFO", "WARN", "WARNING", "ERROR", "FATAL");
+
+    private final String file;
+
+    public LogLineMapper(String file) {
+        this.file = file;
+    }
+
+    @Override
+    public LogEntry mapLine(String line, int lineNumber) {
+        return mapLine((CharSequence) line, lineNumber);
+    }
+
+    @Override
+    public LogEntry mapLine(CharSequence line, int lineNumber) {
+        int length = line.length();
+        int start = skipSpaces(line, 0, length);
+        if (start == length || !Character.isDigit(line.charAt(start))) {
+            return new LogEntry(file, null, null, line.toString());
+        }
+
+        int end = tokenEnd(line, start, length);
+
+        // "2025-03-01 10:15:30" is one timestamp in two tokens
+        int next = skipSpaces(line, end, length);
+        if (next < length && Character.isDigit(line.charAt(next))) {
+            int timeEnd = tokenEnd(line, next, length);
+            if (contains(line, ':', next, timeEnd)) {
+                end = timeEnd;
+                next = skipSpaces(line, end, length);
+            }
+        }
+        String timestamp = line.subSequence(start, end).toString();
+
+        String level = null;
+        int levelEnd = tokenEnd(line, next, length);
+        int from = next;
+        int to = levelEnd;
+        if (to - from > 2 && line.charAt(from) == '[' && line.charAt(to - 1) == ']') {
+            from++;
+            to--;
+        }
+        if (to - from <= 7) {
+            String token = line.subSequence(from, to).toString();
+            if (LEVELS.contains(token)) {
+                level = token;
+                next = skipSpaces(line, levelEnd, length);
+            }
+        }
+
+        return new LogEntry(file, timestamp, level, line.subSequence(next, length).toString());
+    }
+
+    private static int skipSpaces(CharSequence line, int from, int to) {
+        while (from < to && Character.isWhitespace(line.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int tokenEnd(CharSequence line, int from, int to) {
+        while (from < to && !Character.isWhitespace(line.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static boolean contains(CharSequence line, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line.charAt(i) == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,113 @@
+package xyz.sadiulhakim.pjm_data.config;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ParseException;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.core.io.Resource;
+import xyz.sadiulhakim.pjm_data.pojo.DayAheadPrice;
+
+import java.io.IOException;
+
+/**
+ * Streams the prices out of a PJM day-ahead dump one by one instead of binding a whole wrapper at once.
+ * <p>
+ * The file may be a single wrapper object or an array of them, each with an {@code items} array of prices. The
+ * parser walks the tokens, only one price object is bound at a time and every other field of the wrappers is skipped,
+ * so memory stays flat no matter how big the dump is. Fields of a price that DayAheadPrice does not have are ignored.
+ * <p>
+ * Restart uses the item count of the parent class, jumpToItem skips the already read prices without binding them.
+ */
+public class DayAheadPriceStreamReader extends AbstractItemCountingItemStreamItemReader<DayAheadPrice> {
+
+    private static final String ITEMS = "items";
+
+    private final Resource resource;
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private JsonParser parser;
+
+    // Nesting of wrapper arrays/objects around the current items array, the file is done when it drops to 0
+    private int depth;
+    private boolean inItems;
+
+    public DayAheadPriceStreamReader(Resource resource) {
+        this.resource = resource;
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        if (!resource.exists()) {
+            throw new ItemStreamException("Input resource " + resource + " does not exist");
+        }
+        parser = mapper.getFactory().createParser(resource.getInputStream());
+        depth = 0;
+        inItems = false;
+    }
+
+    @Override
+    protected DayAheadPrice doRead() throws Exception {
+        if (!nextPrice()) {
+            return null;
+        }
+        return mapper.readValue(parser, DayAheadPrice.class);
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) throws Exception {
+        for (int i = 0; i < itemIndex && nextPrice(); i++) {
+            parser.skipChildren();
+        }
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (parser != null) {
+            parser.close();
+            parser = null;
+        }
+    }
+
+    // Moves the parser onto the START_OBJECT of the next price, false at the end of the file
+    private boolean nextPrice() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            if (inItems) {
+                if (token == JsonToken.START_OBJECT) {
+                    return true;
+                }
+                if (token == JsonToken.END_ARRAY) {
+                    inItems = false;
+                    continue;
+                }
+                throw new ParseException("Expected a price object in '" + ITEMS + "' but found " + token
+                        + " at " + parser.currentLocation());
+            }
+
+            switch (token) {
+                case START_OBJECT, START_ARRAY -> depth++;
+                case END_OBJECT, END_ARRAY -> depth--;
+                case FIELD_NAME -> {
+                    JsonToken value = parser.nextToken();
+                    if (ITEMS.equals(parser.currentName()) && value == JsonToken.START_ARRAY) {
+                        inItems = true;
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> {
+                    // Scalars between wrappers carry nothing we need
+                }
+            }
+        }
+
+        if (depth != 0 || inItems) {
+            throw new ParseException("Unexpected end of " + resource + " inside a JSON " + (inItems ? "items array" : "wrapper"));
+        }
+        return false;
+    }
+}
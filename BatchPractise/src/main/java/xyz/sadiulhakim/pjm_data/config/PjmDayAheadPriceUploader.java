@@ -1,15 +1,14 @@
 package xyz.sadiulhakim.pjm_data.config;
 
+import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
-import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
-import org.springframework.batch.item.json.JacksonJsonObjectReader;
-import org.springframework.batch.item.json.builder.JsonItemReaderBuilder;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -17,7 +16,6 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 import org.springframework.transaction.PlatformTransactionManager;
 import xyz.sadiulhakim.pjm_data.pojo.DayAheadPrice;
-import xyz.sadiulhakim.pjm_data.pojo.DayAheadPriceWrapper;
 
 import javax.sql.DataSource;
 
@@ -30,49 +28,51 @@ public class PjmDayAheadPriceUploader {
 
     @Bean
     @Qualifier("pjmDayAheadPriceReader")
-    ItemReader<DayAheadPriceWrapper> pjmDayAheadPriceReader() {
+    ItemReader<DayAheadPrice> pjmDayAheadPriceReader() {
 
-        return new JsonItemReaderBuilder<DayAheadPriceWrapper>()
-                .name("pjmDayAheadPriceReader")
-                .jsonObjectReader(new JacksonJsonObjectReader<>(DayAheadPriceWrapper.class))
-                .resource(dayAheadPrice)
-                .build();
+        // One DayAheadPrice per item straight out of the items arrays, the wrappers are never materialised
+        DayAheadPriceStreamReader reader = new DayAheadPriceStreamReader(dayAheadPrice);
+        reader.setName("pjmDayAheadPriceReader");
+        return reader;
     }
 
     @Bean
-    @Qualifier("pjmDayAheadPriceProcessor")
-    ItemProcessor<DayAheadPriceWrapper, DayAheadPriceWrapper> pjmDayAheadPriceProcessor() {
-        return item -> {
-            System.out.println("Item :: " + item);
-            for (DayAheadPrice aheadPrice : item.items()) {
-                aheadPrice.setTotal_da(
-                        aheadPrice.getTotal_lmp_da() + aheadPrice.getCongestion_price_da()
-                                + aheadPrice.getMarginal_loss_price_da() + aheadPrice.getSystem_energy_price_da()
-                );
-            }
-
-            return item;
-        };
+    @Qualifier("pjmDayAheadPriceWriter")
+    ItemWriter<DayAheadPrice> pjmDayAheadPriceWriter(DataSource dataSource) {
+        return new JdbcBatchItemWriterBuilder<DayAheadPrice>()
+                .dataSource(dataSource)
+                .itemPreparedStatementSetter((item, ps) -> {
+                    ps.setString(1, item.getDatetime_beginning_ept());
+                    ps.setString(2, item.getPnode_name());
+                    ps.setDouble(3, item.getSystem_energy_price_da());
+                    ps.setDouble(4, item.getTotal_lmp_da());
+                    ps.setDouble(5, item.getCongestion_price_da());
+                    ps.setDouble(6, item.getMarginal_loss_price_da());
+                    ps.setDouble(7, item.calculateTotalDa()); // total_da is not in the feed, it is calculated here
+                })
+                .sql("insert into pjm_day_ahead_price(datetime_beginning_ept,pnode_name,system_energy_price_da," +
+                        "total_lmp_da,congestion_price_da,marginal_loss_price_da,total_da) values(?,?,?,?,?,?,?)")
+                .build();
     }
 
-//    @Bean
-//    @Qualifier("pjmDayAheadPriceWriter")
-//    ItemWriter<DayAheadPriceWrapper> pjmDayAheadPriceWriter(DataSource dataSource){
-//        return new JdbcBatchItemWriterBuilder<DayAheadPriceWrapper>()
-//                .dataSource(dataSource)
-//                .
-//    }
-
     @Bean
     @Qualifier("pjmDayAheadPriceUploaderStep")
     Step pjmDayAheadPriceUploaderStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
-                                      @Qualifier("pjmDayAheadPriceReader") ItemReader<DayAheadPriceWrapper> pjmDayAheadPriceReader,
-                                      @Qualifier("pjmDayAheadPriceProcessor") ItemProcessor<DayAheadPriceWrapper, DayAheadPriceWrapper> pjmDayAheadPriceProcessor) {
+                                      @Qualifier("pjmDayAheadPriceReader") ItemReader<DayAheadPrice> pjmDayAheadPriceReader,
+                                      @Qualifier("pjmDayAheadPriceWriter") ItemWriter<DayAheadPrice> pjmDayAheadPriceWriter) {
         return new StepBuilder("pjmDayAheadPriceUploaderStep", jobRepository)
-                .<DayAheadPriceWrapper, DayAheadPriceWrapper>chunk(1, transactionManager)
+                .<DayAheadPrice, DayAheadPrice>chunk(1_000, transactionManager)
                 .reader(pjmDayAheadPriceReader)
-                .processor(pjmDayAheadPriceProcessor)
-                .writer(null)
+                .writer(pjmDayAheadPriceWriter)
+                .build();
+    }
+
+    @Bean
+    @Qualifier("pjmDayAheadPriceUploaderJob")
+    Job pjmDayAheadPriceUploaderJob(JobRepository jobRepository,
+                                    @Qualifier("pjmDayAheadPriceUploaderStep") Step pjmDayAheadPriceUploaderStep) {
+        return new JobBuilder("pjmDayAheadPriceUploaderJob", jobRepository)
+                .start(pjmDayAheadPriceUploaderStep)
                 .build();
     }
 }
@@ -55,4 +55,8 @@ public class DayAheadPrice {
     public void setTotal_da(double total_da) {
         this.total_da = total_da;
     }
+
+    public double calculateTotalDa() {
+        return total_lmp_da + congestion_price_da + marginal_loss_price_da + system_energy_price_da;
+    }
 }
@@ -1,8 +0,0 @@
-package xyz.sadiulhakim.pjm_data.pojo;
-
-import java.util.List;
-
-public record DayAheadPriceWrapper(
-        List<DayAheadPrice> items
-) {
-}
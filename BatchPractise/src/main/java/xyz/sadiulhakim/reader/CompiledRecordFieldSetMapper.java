@@ -0,0 +1,134 @@
+package xyz.sadiulhakim.reader;
+
+import org.springframework.batch.item.file.mapping.FieldSetMapper;
+import org.springframework.batch.item.file.transform.FieldSet;
+import org.springframework.beans.SimpleTypeConverter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Drop-in replacement for {@code RecordFieldSetMapper} that does its reflection once, when it is created.
+ * <p>
+ * The canonical constructor of the record is looked up and every parameter gets a parser of its column as a filter.
+ * The result is a single {@code (FieldSet) -> record} method handle, so mapping a line is one call that parses
+ * primitives straight into the constructor: no property lookup, no type converter and no boxing. String, double,
+ * float, long and int components are parsed like the type converter of RecordFieldSetMapper parses them (not with
+ * FieldSet's NumberFormat based readDouble), components of other types still go through the type converter.
+ * <p>
+ * Columns are matched to components by name when the mapper is created, a component without a column fails there
+ * instead of on the first line.
+ */
+public class CompiledRecordFieldSetMapper<T> implements FieldSetMapper<T> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final MethodHandle constructor;
+
+    public CompiledRecordFieldSetMapper(Class<T> targetType, String... names) {
+        if (!targetType.isRecord()) {
+            throw new IllegalArgumentException(targetType.getName() + " is not a record");
+        }
+
+        RecordComponent[] components = targetType.getRecordComponents();
+        Class<?>[] parameterTypes = Arrays.stream(components).map(RecordComponent::getType).toArray(Class<?>[]::new);
+        List<String> columns = Arrays.asList(names);
+
+        try {
+            MethodHandle canonical = LOOKUP.findConstructor(targetType, MethodType.methodType(void.class, parameterTypes));
+
+            // (FieldSet, FieldSet, ...) -> T, every parameter reads its own column
+            MethodHandle[] readers = new MethodHandle[components.length];
+            for (int i = 0; i < components.length; i++) {
+                int column = columns.indexOf(components[i].getName());
+                if (column < 0) {
+                    throw new IllegalArgumentException("No column named '" + components[i].getName() + "' for "
+                            + targetType.getName() + ", columns are " + columns);
+                }
+                readers[i] = MethodHandles.insertArguments(reader(components[i].getType()), 1, column);
+            }
+            MethodHandle perParameter = MethodHandles.filterArguments(canonical, 0, readers);
+
+            // Then every parameter is fed the same FieldSet
+            MethodHandle single = components.length == 0
+                    ? MethodHandles.dropArguments(canonical, 0, FieldSet.class)
+                    : MethodHandles.permuteArguments(perParameter, MethodType.methodType(targetType, FieldSet.class),
+                    new int[components.length]);
+
+            this.constructor = single.asType(MethodType.methodType(Object.class, FieldSet.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access the canonical constructor of " + targetType.getName(), e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T mapFieldSet(FieldSet fieldSet) {
+        try {
+            return (T) (Object) constructor.invokeExact(fieldSet);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not map " + fieldSet, e);
+        }
+    }
+
+    // (FieldSet, int) -> type
+    private static MethodHandle reader(Class<?> type) throws NoSuchMethodException, IllegalAccessException {
+        String method = switch (type.getName()) {
+            case "java.lang.String" -> "readString";
+            case "double" -> "readDouble";
+            case "float" -> "readFloat";
+            case "long" -> "readLong";
+            case "int" -> "readInt";
+            default -> null;
+        };
+        if (method != null) {
+            return LOOKUP.findStatic(CompiledRecordFieldSetMapper.class, method,
+                    MethodType.methodType(type, FieldSet.class, int.class));
+        }
+
+        MethodHandle convert = LOOKUP.findStatic(CompiledRecordFieldSetMapper.class, "convert",
+                MethodType.methodType(Object.class, FieldSet.class, int.class, Class.class));
+        return MethodHandles.insertArguments(convert, 2, type)
+                .asType(MethodType.methodType(type, FieldSet.class, int.class));
+    }
+
+    private static String readString(FieldSet fieldSet, int column) {
+        return fieldSet.readRawString(column);
+    }
+
+    // Double.parseDouble skips surrounding whitespace itself
+    private static double readDouble(FieldSet fieldSet, int column) {
+        return Double.parseDouble(fieldSet.readRawString(column));
+    }
+
+    private static float readFloat(FieldSet fieldSet, int column) {
+        return Float.parseFloat(fieldSet.readRawString(column));
+    }
+
+    // Hex is accepted like the type converter accepts it
+    private static long readLong(FieldSet fieldSet, int column) {
+        String value = fieldSet.readRawString(column).strip();
+        return isHex(value) ? Long.decode(value) : Long.parseLong(value);
+    }
+
+    private static int readInt(FieldSet fieldSet, int column) {
+        String value = fieldSet.readRawString(column).strip();
+        return isHex(value) ? Integer.decode(value) : Integer.parseInt(value);
+    }
+
+    private static boolean isHex(String value) {
+        int start = value.startsWith("-") ? 1 : 0;
+        return value.startsWith("0x", start) || value.startsWith("0X", start) || value.startsWith("#", start);
+    }
+
+    // Same conversion RecordFieldSetMapper applies to every component
+    private static Object convert(FieldSet fieldSet, int column, Class<?> type) {
+        return new SimpleTypeConverter().convertIfNecessary(fieldSet.readRawString(column), type);
+    }
+}
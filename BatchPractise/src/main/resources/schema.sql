@@ -16,4 +16,20 @@ create table if not exists pjm_day_ahead_price
     congestion_price_da    float4,
     marginal_loss_price_da float4,
     total_da float
-);
\ No newline at end of file
+);
+
+create table if not exists log_entry
+(
+    id        int auto_increment primary key,
+    file      varchar,
+    logged_at varchar(40),
+    level     varchar(10),
+    message   varchar
+);
+
+create table if not exists log_file_offset
+(
+    path        varchar primary key,
+    byte_offset bigint,
+    file_key    varchar
+);
@@ -0,0 +1,106 @@
+package xyz.sadiulhakim.batch_commons.file;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Splits a line based file into gridSize byte ranges [startOffset, endOffset) that always begin at the start of a
+// line, so every partition can seek straight to its offset and read whole lines only.
+// Always returns gridSize partitions, a range can be empty when the file has fewer lines than partitions.
+public class ByteRangePartitioner implements Partitioner {
+
+    public static final String PARTITION_INDEX = "partitionIndex";
+    public static final String START_OFFSET = "startOffset";
+    public static final String END_OFFSET = "endOffset";
+    private static final String PARTITION_NAME_PREFIX = "byteRangePartition-";
+
+    private final Resource resource;
+
+    public ByteRangePartitioner(Resource resource) {
+        this.resource = resource;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, ExecutionContext> partitionMap = new LinkedHashMap<>(gridSize);
+
+        try (RandomAccessFile file = new RandomAccessFile(resource.getFile(), "r")) {
+            long length = file.length();
+            long start = 0;
+            for (int i = 0; i < gridSize; i++) {
+                long end = i == gridSize - 1 ? length : Math.max(start, nextLineStart(file, length * (i + 1) / gridSize, length));
+
+                ExecutionContext executionContext = new ExecutionContext();
+                executionContext.putInt(PARTITION_INDEX, i);
+                executionContext.putLong(START_OFFSET, start);
+                executionContext.putLong(END_OFFSET, end);
+
+                // Zero padded so the partitions sort in file order
+                partitionMap.put(PARTITION_NAME_PREFIX + String.format("%04d", i), executionContext);
+                start = end;
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not split " + resource + " into byte ranges", e);
+        }
+
+        return partitionMap;
+    }
+
+    // Start of the line that is the given number of lines before the one starting at offset, 0 when there are fewer.
+    // Lets a partition look at what comes right before its range, e.g. to warm up state a sequential run would have.
+    public static long lineStartBefore(Resource resource, long offset, int lines) {
+        if (offset <= 0 || lines <= 0) {
+            return 0;
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(resource.getFile(), "r")) {
+
+            // The byte at offset - 1 is the '\n' ending the previous line, its start is after the next '\n' before it
+            byte[] buffer = new byte[8192];
+            long end = offset - 1;
+            int found = 0;
+            while (end > 0) {
+                long from = Math.max(0, end - buffer.length);
+                int length = (int) (end - from);
+                file.seek(from);
+                file.readFully(buffer, 0, length);
+                for (int i = length - 1; i >= 0; i--) {
+                    if (buffer[i] == '\n' && ++found == lines) {
+                        return from + i + 1;
+                    }
+                }
+                end = from;
+            }
+            return 0;
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not read the lines before offset " + offset + " of " + resource, e);
+        }
+    }
+
+    // First offset >= position that begins a line
+    private static long nextLineStart(RandomAccessFile file, long position, long length) throws IOException {
+        if (position <= 0) {
+            return 0;
+        }
+
+        file.seek(position - 1);
+        byte[] buffer = new byte[8192];
+        long offset = position - 1;
+        int read;
+        while ((read = file.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,10 @@
+package xyz.sadiulhakim.batch_commons.file;
+
+import org.springframework.batch.item.file.LineMapper;
+
+// LineMapper that can map a line straight out of the file bytes, without a String being created for every line.
+// MappedLineItemReader hands ASCII lines to it as a CharSequence view that is only valid during the call.
+public interface CharSequenceLineMapper<T> extends LineMapper<T> {
+
+    T mapLine(CharSequence line, int lineNumber) throws Exception;
+}
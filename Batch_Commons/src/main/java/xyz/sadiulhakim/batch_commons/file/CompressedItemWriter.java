@@ -0,0 +1,194 @@
+package xyz.sadiulhakim.batch_commons.file;
+
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.file.FlatFileFooterCallback;
+import org.springframework.batch.item.file.FlatFileHeaderCallback;
+import org.springframework.batch.item.file.ResourceAwareItemWriterItemStream;
+import org.springframework.batch.item.file.transform.LineAggregator;
+import org.springframework.core.io.WritableResource;
+import org.springframework.util.ClassUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes items as text into a gzip or zstd file, picked from the file extension (see {@link CompressionCodec}).
+ * Covers what the configs use {@code FlatFileItemWriter} and {@code JsonFileItemWriter} for: every item is turned into
+ * text by the {@link LineAggregator} and followed by the line separator, items after the first are preceded by the
+ * item separator. Header and footer callbacks work as in FlatFileItemWriter, the header is followed by the line
+ * separator.
+ * <pre>
+ * csv:  lineAggregator = DelimitedLineAggregator
+ * json: lineAggregator = " " + jsonObjectMarshaller.marshal(item), header "[\n", itemSeparator ",\n", lineSeparator "",
+ *       footer "\n]\n"
+ * </pre>
+ * Every {@link #update} (once per chunk) finishes the current member and saves the file length, so the file always
+ * ends with a complete member at a commit. A restart truncates the file to the saved length and carries on with a
+ * new member; gzip and zstd readers read the concatenated members as one stream.
+ * <p>
+ * Items are compressed as they are written, there is no transactional buffer. Like a non-transactional
+ * FlatFileItemWriter, what a failed chunk wrote is cut off again by the restart.
+ */
+public class CompressedItemWriter<T> extends ItemStreamSupport implements ResourceAwareItemWriterItemStream<T> {
+
+    private static final String POSITION = "position";
+    private static final String WRITTEN = "written";
+
+    private final LineAggregator<T> lineAggregator;
+    private WritableResource resource;
+    private FlatFileHeaderCallback headerCallback;
+    private FlatFileFooterCallback footerCallback;
+    private String itemSeparator = "";
+    private String lineSeparator = System.lineSeparator();
+
+    private CompressionCodec codec;
+    private FileChannel channel;
+    private OutputStream file;
+    private Writer member;
+    private long written;
+    private boolean opened;
+
+    public CompressedItemWriter(LineAggregator<T> lineAggregator) {
+        this.lineAggregator = lineAggregator;
+        setName(ClassUtils.getShortName(CompressedItemWriter.class));
+    }
+
+    @Override
+    public void setResource(WritableResource resource) {
+        this.resource = resource;
+    }
+
+    public void setHeaderCallback(FlatFileHeaderCallback headerCallback) {
+        this.headerCallback = headerCallback;
+    }
+
+    public void setFooterCallback(FlatFileFooterCallback footerCallback) {
+        this.footerCallback = footerCallback;
+    }
+
+    public void setItemSeparator(String itemSeparator) {
+        this.itemSeparator = itemSeparator;
+    }
+
+    public void setLineSeparator(String lineSeparator) {
+        this.lineSeparator = lineSeparator;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        codec = CompressionCodec.of(resource);
+        try {
+            File output = resource.getFile();
+            File parent = output.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new ItemStreamException("Could not create the directory of " + resource);
+            }
+
+            channel = FileChannel.open(output.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (executionContext.containsKey(getExecutionContextKey(POSITION))) {
+                long position = executionContext.getLong(getExecutionContextKey(POSITION));
+                if (channel.size() < position) {
+                    throw new ItemStreamException("Output " + resource + " is shorter than the restart position " + position);
+                }
+                channel.truncate(position);
+                channel.position(position);
+                written = executionContext.getLong(getExecutionContextKey(WRITTEN));
+            } else {
+                channel.truncate(0);
+                written = 0;
+            }
+            file = new BufferedOutputStream(Channels.newOutputStream(channel), CompressionCodec.BUFFER_SIZE);
+            opened = true;
+
+            if (headerCallback != null && channel.position() == 0) {
+                Writer writer = member();
+                headerCallback.writeHeader(writer);
+                writer.write(lineSeparator);
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not open " + resource, e);
+        }
+    }
+
+    @Override
+    public void write(Chunk<? extends T> chunk) throws Exception {
+        Writer writer = member();
+        for (T item : chunk) {
+            if (written > 0) {
+                writer.write(itemSeparator);
+            }
+            writer.write(lineAggregator.aggregate(item));
+            writer.write(lineSeparator);
+            written++;
+        }
+    }
+
+    // The member being written, a new one is started after every update
+    private Writer member() throws IOException {
+        if (member == null) {
+            member = new OutputStreamWriter(codec.newMember(file), StandardCharsets.UTF_8);
+        }
+        return member;
+    }
+
+    private void finishMember() throws IOException {
+        if (member != null) {
+            member.close();
+            member = null;
+        }
+        file.flush();
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (!opened) {
+            return;
+        }
+
+        try {
+            finishMember();
+            executionContext.putLong(getExecutionContextKey(POSITION), channel.position());
+            executionContext.putLong(getExecutionContextKey(WRITTEN), written);
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not finish a member of " + resource, e);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (!opened) {
+            return;
+        }
+        opened = false;
+
+        try {
+            if (footerCallback != null) {
+                footerCallback.writeFooter(member());
+            }
+            finishMember();
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not finish " + resource, e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new ItemStreamException("Could not close " + resource, e);
+            } finally {
+                member = null;
+                file = null;
+                channel = null;
+            }
+        }
+    }
+}
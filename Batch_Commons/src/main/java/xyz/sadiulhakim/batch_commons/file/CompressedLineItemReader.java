@@ -0,0 +1,342 @@
+package xyz.sadiulhakim.batch_commons.file;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.file.ResourceAwareItemReaderItemStream;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Line reader for gzip and zstd files, the compressed counterpart of {@link MappedLineItemReader}. The codec is picked
+ * from the file extension, see {@link CompressionCodec}.
+ * <p>
+ * The file is decompressed in 1MB blocks and lines are found by scanning the decompressed bytes for {@code '\n'}.
+ * Like MappedLineItemReader, a {@link CharSequenceLineMapper} gets ASCII lines as a view over those bytes.
+ * <p>
+ * For a restart it saves the file offset of the member (gzip member, zstd frame) the next line is in and how many
+ * decompressed bytes of that member come before it. A restart seeks to the member and only decompresses that one
+ * member up to the line, instead of the whole file up to the line. Files written by {@link CompressedItemWriter}
+ * have a member per chunk.
+ */
+public class CompressedLineItemReader<T> extends ItemStreamSupport implements ResourceAwareItemReaderItemStream<T> {
+
+    private static final String MEMBER_OFFSET = "memberOffset";
+    private static final String MEMBER_POSITION = "memberPosition";
+    private static final String LINE_NUMBER = "lineNumber";
+
+    private final LineMapper<T> lineMapper;
+    private Resource resource;
+    private int linesToSkip;
+    private boolean skipComments = true;
+
+    private FileChannel channel;
+    private MemberDecoder decoder;
+    private boolean endOfInput;
+    private int lineNumber;
+
+    // Decompressed bytes, buffer[position, limit) is not read yet
+    private byte[] buffer = new byte[CompressionCodec.BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    // Where the bytes in the buffer came from, one entry per decoded block: buffer index, member offset and the
+    // position of the block inside its member. Blocks are at most the buffer size, so there are only a few.
+    private int blocks;
+    private int[] blockStart = new int[16];
+    private long[] blockMemberOffset = new long[16];
+    private long[] blockMemberPosition = new long[16];
+
+    // Member and position of buffer[0] when no block is buffered
+    private long baseMemberOffset;
+    private long baseMemberPosition;
+
+    private int lineStart;
+    private int lineLength;
+    private boolean lineIsAscii;
+
+    private final ByteSlice slice = new ByteSlice();
+
+    public CompressedLineItemReader(LineMapper<T> lineMapper) {
+        this.lineMapper = lineMapper;
+        setName(ClassUtils.getShortName(CompressedLineItemReader.class));
+    }
+
+    @Override
+    public void setResource(Resource resource) {
+        this.resource = resource;
+    }
+
+    public void setLinesToSkip(int linesToSkip) {
+        this.linesToSkip = linesToSkip;
+    }
+
+    // On by default like FlatFileItemReader, turn it off for input where a line may start with '#'
+    public void setSkipComments(boolean skipComments) {
+        this.skipComments = skipComments;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        if (resource == null || !resource.exists()) {
+            throw new ItemStreamException("Input resource must exist: " + resource);
+        }
+
+        boolean restart = executionContext.containsKey(getExecutionContextKey(MEMBER_OFFSET));
+        long memberOffset = restart ? executionContext.getLong(getExecutionContextKey(MEMBER_OFFSET)) : 0;
+        long memberPosition = restart ? executionContext.getLong(getExecutionContextKey(MEMBER_POSITION)) : 0;
+
+        try {
+            channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not open " + resource, e);
+        }
+        decoder = CompressionCodec.of(resource).newDecoder(channel, memberOffset);
+        endOfInput = false;
+        position = 0;
+        limit = 0;
+        blocks = 0;
+        baseMemberOffset = memberOffset;
+        baseMemberPosition = 0;
+
+        if (restart) {
+            lineNumber = executionContext.getInt(getExecutionContextKey(LINE_NUMBER));
+            skipBytes(memberPosition);
+            return;
+        }
+
+        lineNumber = 0;
+        for (int i = 0; i < linesToSkip && nextLine(); i++) {
+            lineNumber++;
+        }
+    }
+
+    @Override
+    public T read() throws Exception {
+        while (nextLine()) {
+            lineNumber++;
+
+            // Same as FlatFileItemReader: '#' lines are comments
+            if (skipComments && lineLength > 0 && buffer[lineStart] == '#') {
+                continue;
+            }
+
+            try {
+                if (lineIsAscii && lineMapper instanceof CharSequenceLineMapper<T> charSequenceLineMapper) {
+                    slice.reset(buffer, lineStart, lineLength);
+                    return charSequenceLineMapper.mapLine(slice, lineNumber);
+                }
+                return lineMapper.mapLine(decodeLine(), lineNumber);
+            } catch (Exception e) {
+                String input = decodeLine();
+                throw new FlatFileParseException("Parsing error at line: " + lineNumber + " in resource=["
+                        + resource.getDescription() + "], input=[" + input + "]", e, input, lineNumber);
+            }
+        }
+        return null;
+    }
+
+    // Finds the line starting at position, sets lineStart/lineLength and moves position past its '\n'
+    private boolean nextLine() throws ItemStreamException {
+        int scanned = position;
+        while (true) {
+            boolean ascii = true;
+            int i = scanned;
+            while (i < limit && buffer[i] != '\n') {
+                ascii &= buffer[i] >= 0;
+                i++;
+            }
+
+            if (i < limit || (endOfInput && position < limit)) {
+                lineStart = position;
+                lineLength = i - position;
+                if (lineLength > 0 && buffer[i - 1] == '\r') {
+                    lineLength--;
+                }
+                lineIsAscii = ascii && allAscii(position, scanned);
+                position = Math.min(i + 1, limit);
+                return true;
+            }
+            if (endOfInput) {
+                return false;
+            }
+
+            scanned = i - position;
+            fill();
+            scanned = Math.min(scanned, limit);
+        }
+    }
+
+    private boolean allAscii(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Drops what was read, makes room for (at least) one more block and decodes it
+    private void fill() throws ItemStreamException {
+        compact();
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length << 1);
+        }
+
+        try {
+            int decoded = decoder.decode(buffer, limit, buffer.length - limit);
+            if (decoded < 0) {
+                endOfInput = true;
+                return;
+            }
+            addBlock(limit, decoder.memberOffset(), decoder.memberPosition());
+            limit += decoded;
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not decompress " + resource, e);
+        }
+    }
+
+    private void compact() {
+        if (position == 0) {
+            return;
+        }
+
+        // Keep the block the position is in, re-based at position
+        int kept = -1;
+        long memberOffset = baseMemberOffset;
+        long memberPosition = baseMemberPosition + position;
+        for (int b = 0; b < blocks; b++) {
+            if (blockStart[b] <= position) {
+                kept = b;
+                memberOffset = blockMemberOffset[b];
+                memberPosition = blockMemberPosition[b] + (position - blockStart[b]);
+            }
+        }
+
+        int count = 0;
+        for (int b = kept + 1; b < blocks; b++, count++) {
+            blockStart[count] = blockStart[b] - position;
+            blockMemberOffset[count] = blockMemberOffset[b];
+            blockMemberPosition[count] = blockMemberPosition[b];
+        }
+        blocks = count;
+        baseMemberOffset = memberOffset;
+        baseMemberPosition = memberPosition;
+
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+    }
+
+    private void addBlock(int start, long memberOffset, long memberPosition) {
+        if (blocks == blockStart.length) {
+            blockStart = Arrays.copyOf(blockStart, blocks << 1);
+            blockMemberOffset = Arrays.copyOf(blockMemberOffset, blocks << 1);
+            blockMemberPosition = Arrays.copyOf(blockMemberPosition, blocks << 1);
+        }
+        blockStart[blocks] = start;
+        blockMemberOffset[blocks] = memberOffset;
+        blockMemberPosition[blocks] = memberPosition;
+        blocks++;
+    }
+
+    // Restart: throws away the bytes of the member before the saved line
+    private void skipBytes(long bytes) {
+        while (bytes > 0) {
+            if (position == limit) {
+                fill();
+                if (endOfInput) {
+                    throw new ItemStreamException("Restart position is beyond the end of " + resource);
+                }
+            }
+            int skipped = (int) Math.min(bytes, limit - position);
+            position += skipped;
+            bytes -= skipped;
+        }
+    }
+
+    private String decodeLine() {
+        return new String(buffer, lineStart, lineLength, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        long memberOffset = baseMemberOffset;
+        long memberPosition = baseMemberPosition + position;
+        for (int b = 0; b < blocks && blockStart[b] <= position; b++) {
+            memberOffset = blockMemberOffset[b];
+            memberPosition = blockMemberPosition[b] + (position - blockStart[b]);
+        }
+
+        executionContext.putLong(getExecutionContextKey(MEMBER_OFFSET), memberOffset);
+        executionContext.putLong(getExecutionContextKey(MEMBER_POSITION), memberPosition);
+        executionContext.putInt(getExecutionContextKey(LINE_NUMBER), lineNumber);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        try {
+            if (decoder != null) {
+                decoder.close();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not close " + resource, e);
+        } finally {
+            decoder = null;
+            channel = null;
+        }
+    }
+
+    // CharSequence view over ASCII bytes of the buffer, reused for every line
+    private static class ByteSlice implements CharSequence {
+
+        private byte[] bytes;
+        private int start;
+        private int length;
+
+        private void reset(byte[] bytes, int start, int length) {
+            this.bytes = bytes;
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+            }
+            return (char) bytes[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > length || from > to) {
+                throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + length);
+            }
+            ByteSlice sub = new ByteSlice();
+            sub.reset(bytes, start + from, to - from);
+            return sub;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, start, length, StandardCharsets.US_ASCII);
+        }
+    }
+}
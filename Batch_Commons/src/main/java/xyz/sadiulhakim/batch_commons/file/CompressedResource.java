@@ -0,0 +1,74 @@
+package xyz.sadiulhakim.batch_commons.file;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+
+// Resource whose input stream is the decompressed content of a gzip or zstd file, for readers that only take a
+// Resource (StaxEventItemReader, JsonItemReader ...). Those restart by reading and skipping the items again, which
+// works the same on the decompressed stream. Everything but getInputStream is the compressed file.
+public class CompressedResource extends AbstractResource {
+
+    private final Resource resource;
+    private final CompressionCodec codec;
+
+    public CompressedResource(Resource resource) {
+        this.resource = resource;
+        this.codec = CompressionCodec.of(resource);
+    }
+
+    // Wraps resource only when its extension says it is compressed
+    public static Resource of(Resource resource) {
+        return CompressionCodec.of(resource).isCompressed() ? new CompressedResource(resource) : resource;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return codec.decompress(resource.getInputStream());
+    }
+
+    @Override
+    public boolean exists() {
+        return resource.exists();
+    }
+
+    @Override
+    public boolean isReadable() {
+        return resource.isReadable();
+    }
+
+    @Override
+    public URL getURL() throws IOException {
+        return resource.getURL();
+    }
+
+    @Override
+    public URI getURI() throws IOException {
+        return resource.getURI();
+    }
+
+    @Override
+    public File getFile() throws IOException {
+        return resource.getFile();
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        return resource.lastModified();
+    }
+
+    @Override
+    public String getFilename() {
+        return resource.getFilename();
+    }
+
+    @Override
+    public String getDescription() {
+        return "decompressed " + resource.getDescription();
+    }
+}
@@ -0,0 +1,92 @@
+package xyz.sadiulhakim.batch_commons.file;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.springframework.core.io.Resource;
+
+import java.io.BufferedInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of a file, picked from its extension: {@code .gz}/{@code .gzip} is gzip, {@code .zst}/{@code .zstd} is
+ * zstd, anything else is stored as is.
+ * <p>
+ * Both formats are a sequence of independent members (gzip members, zstd frames). Readers and writers of this package
+ * restart at member boundaries: {@link CompressedItemWriter} finishes a member at every commit and
+ * {@link CompressedLineItemReader} saves the offset of the member it is in.
+ */
+public enum CompressionCodec {
+
+    NONE,
+    GZIP,
+    ZSTD;
+
+    // The codecs work on large blocks, small buffers only add calls into the (native) codec
+    static final int BUFFER_SIZE = 1 << 20;
+
+    public static CompressionCodec of(Resource resource) {
+        String filename = resource.getFilename();
+        if (filename == null) {
+            return NONE;
+        }
+
+        filename = filename.toLowerCase(Locale.ROOT);
+        if (filename.endsWith(".gz") || filename.endsWith(".gzip")) {
+            return GZIP;
+        }
+        if (filename.endsWith(".zst") || filename.endsWith(".zstd")) {
+            return ZSTD;
+        }
+        return NONE;
+    }
+
+    public boolean isCompressed() {
+        return this != NONE;
+    }
+
+    // Decompresses every member of in, one after the other
+    public InputStream decompress(InputStream in) throws IOException {
+        return switch (this) {
+            case NONE -> in;
+            case GZIP -> new GZIPInputStream(in, BUFFER_SIZE);
+            case ZSTD -> new BufferedInputStream(new ZstdInputStream(new BufferedInputStream(in, BUFFER_SIZE)), BUFFER_SIZE);
+        };
+    }
+
+    // Starts a new member on out. Closing the returned stream finishes the member, out itself stays open.
+    OutputStream newMember(OutputStream out) throws IOException {
+        OutputStream member = new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+
+        return switch (this) {
+            case NONE -> member;
+            case GZIP -> new GZIPOutputStream(member, BUFFER_SIZE);
+            case ZSTD -> new ZstdOutputStream(member);
+        };
+    }
+
+    // Decodes channel from offset on, which must be the start of a member
+    MemberDecoder newDecoder(FileChannel channel, long offset) {
+        return switch (this) {
+            case NONE -> new MemberDecoder.Plain(channel, offset);
+            case GZIP -> new MemberDecoder.Gzip(channel, offset);
+            case ZSTD -> new MemberDecoder.Zstd(channel, offset);
+        };
+    }
+}
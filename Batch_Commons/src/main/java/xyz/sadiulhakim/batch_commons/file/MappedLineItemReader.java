@@ -0,0 +1,278 @@
+package xyz.sadiulhakim.batch_commons.file;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.file.ResourceAwareItemReaderItemStream;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Line reader over a memory mapped file, used in place of {@code FlatFileItemReader}.
+ * <p>
+ * Lines are found by scanning the mapped bytes for {@code '\n'}, there is no BufferedReader and no char decoding of
+ * the whole file. A {@link CharSequenceLineMapper} gets ASCII lines as a view over the mapped bytes, so no String is
+ * created for them. Any other LineMapper gets a String as usual.
+ * <p>
+ * The byte offset of the next line is saved in the ExecutionContext, a restart seeks straight back to it.
+ * The reader can be limited to a byte range {@code [startOffset, endOffset)} that starts at the beginning of a line,
+ * as produced by {@link ByteRangePartitioner}.
+ * Files bigger than 2GB are mapped one window at a time.
+ */
+public class MappedLineItemReader<T> extends ItemStreamSupport implements ResourceAwareItemReaderItemStream<T> {
+
+    private static final String OFFSET = "offset";
+    private static final String LINE_NUMBER = "lineNumber";
+    private static final long DEFAULT_WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private final LineMapper<T> lineMapper;
+    private final Charset charset = StandardCharsets.UTF_8;
+    private Resource resource;
+    private int linesToSkip;
+    private long startOffset;
+    private long endOffset = -1;
+    private long windowSize = DEFAULT_WINDOW_SIZE;
+    private boolean skipComments = true;
+
+    private FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long limit;
+    private long offset;
+    private int lineNumber;
+
+    // Position and length of the current line inside the window
+    private int linePosition;
+    private int lineLength;
+    private boolean lineIsAscii;
+
+    private final ByteSlice slice = new ByteSlice();
+    private byte[] decodeBuffer = new byte[256];
+
+    public MappedLineItemReader(LineMapper<T> lineMapper) {
+        this.lineMapper = lineMapper;
+        setName(ClassUtils.getShortName(MappedLineItemReader.class));
+    }
+
+    @Override
+    public void setResource(Resource resource) {
+        this.resource = resource;
+    }
+
+    public void setLinesToSkip(int linesToSkip) {
+        this.linesToSkip = linesToSkip;
+    }
+
+    // On by default like FlatFileItemReader, turn it off for input where a line may start with '#'
+    public void setSkipComments(boolean skipComments) {
+        this.skipComments = skipComments;
+    }
+
+    public void setStartOffset(long startOffset) {
+        this.startOffset = startOffset;
+    }
+
+    // Exclusive, -1 reads up to the end of the file
+    public void setEndOffset(long endOffset) {
+        this.endOffset = endOffset;
+    }
+
+    // Mostly for tests, FileChannel.map cannot map more than Integer.MAX_VALUE bytes at once
+    public void setWindowSize(long windowSize) {
+        this.windowSize = Math.min(windowSize, Integer.MAX_VALUE);
+    }
+
+    // Byte offset of the next line, right after a chunk is read this is where the chunk ends
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        if (resource == null || !resource.exists()) {
+            throw new ItemStreamException("Input resource must exist: " + resource);
+        }
+
+        try {
+            channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ);
+            limit = endOffset < 0 ? channel.size() : Math.min(endOffset, channel.size());
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not open " + resource, e);
+        }
+        window = null;
+
+        if (executionContext.containsKey(getExecutionContextKey(OFFSET))) {
+            offset = executionContext.getLong(getExecutionContextKey(OFFSET));
+            lineNumber = executionContext.getInt(getExecutionContextKey(LINE_NUMBER));
+            return;
+        }
+
+        offset = startOffset;
+        lineNumber = 0;
+        for (int i = 0; i < linesToSkip && nextLine(); i++) {
+            lineNumber++;
+        }
+    }
+
+    @Override
+    public T read() throws Exception {
+        while (nextLine()) {
+            lineNumber++;
+
+            // Same as FlatFileItemReader: '#' lines are comments
+            if (skipComments && lineLength > 0 && window.get(linePosition) == '#') {
+                continue;
+            }
+
+            try {
+                if (lineIsAscii && lineMapper instanceof CharSequenceLineMapper<T> charSequenceLineMapper) {
+                    slice.reset(window, linePosition, lineLength);
+                    return charSequenceLineMapper.mapLine(slice, lineNumber);
+                }
+                return lineMapper.mapLine(decodeLine(), lineNumber);
+            } catch (Exception e) {
+                String input = decodeLine();
+                throw new FlatFileParseException("Parsing error at line: " + lineNumber + " in resource=["
+                        + resource.getDescription() + "], input=[" + input + "]", e, input, lineNumber);
+            }
+        }
+        return null;
+    }
+
+    // Finds the line starting at offset, sets linePosition/lineLength and moves offset past its '\n'
+    private boolean nextLine() throws ItemStreamException {
+        if (offset >= limit) {
+            return false;
+        }
+
+        if (window == null || offset < windowStart || offset >= windowStart + window.limit()) {
+            map(offset);
+        }
+
+        while (true) {
+            int position = (int) (offset - windowStart);
+            int end = window.limit();
+            boolean ascii = true;
+            int i = position;
+            while (i < end) {
+                byte b = window.get(i);
+                if (b == '\n') {
+                    break;
+                }
+                ascii &= b >= 0;
+                i++;
+            }
+
+            boolean lastLine = windowStart + end >= limit;
+            if (i == end && !lastLine) {
+                if (position == 0) {
+                    throw new ItemStreamException("Line at offset " + offset + " is longer than the mapping window");
+                }
+
+                // The line crosses the end of the window, map again starting at this line
+                map(offset);
+                continue;
+            }
+
+            linePosition = position;
+            lineLength = i - position;
+            if (lineLength > 0 && window.get(i - 1) == '\r') {
+                lineLength--;
+            }
+            lineIsAscii = ascii;
+            offset = windowStart + Math.min(i + 1, end);
+            return true;
+        }
+    }
+
+    private void map(long position) {
+        try {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, limit - position));
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not map " + resource + " at offset " + position, e);
+        }
+    }
+
+    private String decodeLine() {
+        if (lineLength > decodeBuffer.length) {
+            decodeBuffer = Arrays.copyOf(decodeBuffer, Math.max(lineLength, decodeBuffer.length << 1));
+        }
+        window.get(linePosition, decodeBuffer, 0, lineLength);
+        return new String(decodeBuffer, 0, lineLength, charset);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        executionContext.putLong(getExecutionContextKey(OFFSET), offset);
+        executionContext.putInt(getExecutionContextKey(LINE_NUMBER), lineNumber);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        window = null;
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Could not close " + resource, e);
+        } finally {
+            channel = null;
+        }
+    }
+
+    // CharSequence view over ASCII bytes of the mapped file, reused for every line
+    private static class ByteSlice implements CharSequence {
+
+        private MappedByteBuffer buffer;
+        private int start;
+        private int length;
+
+        private void reset(MappedByteBuffer buffer, int start, int length) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+            }
+            return (char) buffer.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > length || from > to) {
+                throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + length);
+            }
+            ByteSlice sub = new ByteSlice();
+            sub.reset(buffer, start + from, to - from);
+            return sub;
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length];
+            buffer.get(start, bytes, 0, length);
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+    }
+}
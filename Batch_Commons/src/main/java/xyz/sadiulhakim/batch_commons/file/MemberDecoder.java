@@ -0,0 +1,302 @@
+package xyz.sadiulhakim.batch_commons.file;
+
+import com.github.luben.zstd.ZstdDecompressCtx;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+// Decompresses a file from a member boundary on and tells where every decoded block came from: the offset of its
+// member in the file and its position inside the decompressed member. A decode call never returns bytes of two members.
+abstract class MemberDecoder implements Closeable {
+
+    protected final FileChannel channel;
+
+    // Member of the bytes returned by the last decode call and the position of the first of them inside the member
+    protected long memberOffset;
+    protected long memberPosition;
+
+    MemberDecoder(FileChannel channel, long offset) {
+        this.channel = channel;
+        this.memberOffset = offset;
+    }
+
+    // Decodes at most len bytes into out, returns how many or -1 after the last member
+    abstract int decode(byte[] out, int off, int len) throws IOException;
+
+    long memberOffset() {
+        return memberOffset;
+    }
+
+    long memberPosition() {
+        return memberPosition;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    // Not compressed, every offset is the start of a "member"
+    static class Plain extends MemberDecoder {
+
+        private long position;
+
+        Plain(FileChannel channel, long offset) {
+            super(channel, offset);
+            this.position = offset;
+        }
+
+        @Override
+        int decode(byte[] out, int off, int len) throws IOException {
+            int read = channel.read(ByteBuffer.wrap(out, off, len), position);
+            if (read <= 0) {
+                return -1;
+            }
+            memberOffset = position;
+            memberPosition = 0;
+            position += read;
+            return read;
+        }
+    }
+
+    // RFC 1952 members one after the other (gzip -c a b > ab, pigz, bgzip ...). GZIPInputStream reads them too, but
+    // does not tell where a member starts.
+    static class Gzip extends MemberDecoder {
+
+        private static final int FHCRC = 2;
+        private static final int FEXTRA = 4;
+        private static final int FNAME = 8;
+        private static final int FCOMMENT = 16;
+
+        private final byte[] in = new byte[CompressionCodec.BUFFER_SIZE];
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+
+        // File offset of in[0], in[inPosition, inLimit) is not consumed yet
+        private long inBase;
+        private int inPosition;
+        private int inLimit;
+
+        private boolean inMember;
+        private long currentMemberOffset;
+        private long currentMemberSize;
+
+        Gzip(FileChannel channel, long offset) {
+            super(channel, offset);
+            this.inBase = offset;
+        }
+
+        @Override
+        int decode(byte[] out, int off, int len) throws IOException {
+            while (true) {
+                if (!inMember && !startMember()) {
+                    return -1;
+                }
+
+                if (inflater.needsInput()) {
+                    if (!fill()) {
+                        throw new EOFException("Gzip member at offset " + currentMemberOffset + " is truncated");
+                    }
+                    inflater.setInput(in, inPosition, inLimit - inPosition);
+                }
+
+                int inflated;
+                try {
+                    inflated = inflater.inflate(out, off, len);
+                } catch (DataFormatException e) {
+                    throw new ZipException("Corrupt gzip member at offset " + currentMemberOffset + ": " + e.getMessage());
+                }
+                inPosition = inLimit - inflater.getRemaining();
+
+                if (inflated > 0) {
+                    crc.update(out, off, inflated);
+                    memberOffset = currentMemberOffset;
+                    memberPosition = currentMemberSize;
+                    currentMemberSize += inflated;
+                    return inflated;
+                }
+                if (inflater.finished()) {
+                    finishMember();
+                } else if (inflater.needsDictionary()) {
+                    throw new ZipException("Gzip member at offset " + currentMemberOffset + " needs a preset dictionary");
+                }
+            }
+        }
+
+        private boolean startMember() throws IOException {
+            if (!ensure(1)) {
+                return false;
+            }
+
+            currentMemberOffset = inBase + inPosition;
+            currentMemberSize = 0;
+            if (!ensure(10)) {
+                throw new EOFException("Gzip header at offset " + currentMemberOffset + " is truncated");
+            }
+            if ((in[inPosition] & 0xff) != 0x1f || (in[inPosition + 1] & 0xff) != 0x8b || in[inPosition + 2] != 8) {
+                throw new ZipException("Not a gzip member at offset " + currentMemberOffset);
+            }
+
+            int flags = in[inPosition + 3] & 0xff;
+            inPosition += 10;
+            if ((flags & FEXTRA) != 0) {
+                if (!ensure(2)) {
+                    throw new EOFException("Gzip header at offset " + currentMemberOffset + " is truncated");
+                }
+                int extraLength = (in[inPosition] & 0xff) | (in[inPosition + 1] & 0xff) << 8;
+                inPosition += 2;
+                skip(extraLength);
+            }
+            if ((flags & FNAME) != 0) {
+                skipZeroTerminated();
+            }
+            if ((flags & FCOMMENT) != 0) {
+                skipZeroTerminated();
+            }
+            if ((flags & FHCRC) != 0) {
+                skip(2);
+            }
+
+            inflater.reset();
+            crc.reset();
+            inflater.setInput(in, inPosition, inLimit - inPosition);
+            inMember = true;
+            return true;
+        }
+
+        private void finishMember() throws IOException {
+            if (!ensure(8)) {
+                throw new EOFException("Gzip trailer of the member at offset " + currentMemberOffset + " is truncated");
+            }
+            long expectedCrc = readIntLE(inPosition) & 0xffffffffL;
+            long expectedSize = readIntLE(inPosition + 4) & 0xffffffffL;
+            if (expectedCrc != crc.getValue() || expectedSize != (currentMemberSize & 0xffffffffL)) {
+                throw new ZipException("Gzip member at offset " + currentMemberOffset + " fails its CRC or size check");
+            }
+            inPosition += 8;
+            inMember = false;
+        }
+
+        private int readIntLE(int i) {
+            return (in[i] & 0xff) | (in[i + 1] & 0xff) << 8 | (in[i + 2] & 0xff) << 16 | (in[i + 3] & 0xff) << 24;
+        }
+
+        private void skip(int n) throws IOException {
+            while (n > 0) {
+                if (!ensure(1)) {
+                    throw new EOFException("Gzip header at offset " + currentMemberOffset + " is truncated");
+                }
+                int skipped = Math.min(n, inLimit - inPosition);
+                inPosition += skipped;
+                n -= skipped;
+            }
+        }
+
+        private void skipZeroTerminated() throws IOException {
+            do {
+                if (!ensure(1)) {
+                    throw new EOFException("Gzip header at offset " + currentMemberOffset + " is truncated");
+                }
+            } while (in[inPosition++] != 0);
+        }
+
+        private boolean ensure(int n) throws IOException {
+            while (inLimit - inPosition < n) {
+                if (!fill()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Moves the unread bytes to the front and reads more behind them, false at the end of the file
+        private boolean fill() throws IOException {
+            int remaining = inLimit - inPosition;
+            System.arraycopy(in, inPosition, in, 0, remaining);
+            inBase += inPosition;
+            inPosition = 0;
+            inLimit = remaining;
+
+            int read = channel.read(ByteBuffer.wrap(in, inLimit, in.length - inLimit), inBase + inLimit);
+            if (read <= 0) {
+                return false;
+            }
+            inLimit += read;
+            return true;
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+        }
+    }
+
+    // Zstd frames one after the other. ZSTD_decompressStream stops at the end of every frame, so the input position
+    // at that point is where the next frame starts.
+    static class Zstd extends MemberDecoder {
+
+        private final ZstdDecompressCtx context = new ZstdDecompressCtx();
+        private final ByteBuffer source = ByteBuffer.allocateDirect(CompressionCodec.BUFFER_SIZE).flip();
+        private final ByteBuffer target = ByteBuffer.allocateDirect(CompressionCodec.BUFFER_SIZE).flip();
+
+        // File offset of source[0]
+        private long sourceBase;
+
+        private long currentMemberOffset;
+        private long currentMemberSize;
+        private boolean frameDone = true;
+
+        Zstd(FileChannel channel, long offset) {
+            super(channel, offset);
+            this.sourceBase = offset;
+        }
+
+        @Override
+        int decode(byte[] out, int off, int len) throws IOException {
+            while (!target.hasRemaining()) {
+                if (frameDone) {
+                    if (!source.hasRemaining() && !fill()) {
+                        return -1;
+                    }
+                    currentMemberOffset = sourceBase + source.position();
+                    currentMemberSize = 0;
+                    frameDone = false;
+                }
+
+                if (!source.hasRemaining() && !fill()) {
+                    throw new EOFException("Zstd frame at offset " + currentMemberOffset + " is truncated");
+                }
+
+                target.clear();
+                frameDone = context.decompressDirectByteBufferStream(target, source);
+                target.flip();
+            }
+
+            int decoded = Math.min(len, target.remaining());
+            target.get(out, off, decoded);
+            memberOffset = currentMemberOffset;
+            memberPosition = currentMemberSize;
+            currentMemberSize += decoded;
+            return decoded;
+        }
+
+        private boolean fill() throws IOException {
+            sourceBase += source.position();
+            source.compact();
+            int read = channel.read(source, sourceBase + source.position());
+            source.flip();
+            return read > 0;
+        }
+
+        @Override
+        public void close() {
+            context.close();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package xyz.sadiulhakim.batch_commons.launcher;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// What the status endpoint returns for a JobExecution
+public record JobStatus(long executionId, String jobName, String status, String exitCode, LocalDateTime createTime,
+                        LocalDateTime startTime, LocalDateTime endTime, List<StepStatus> steps) {
+
+    public static JobStatus of(JobExecution execution) {
+        List<StepStatus> steps = execution.getStepExecutions().stream()
+                .map(StepStatus::of)
+                .toList();
+        return new JobStatus(execution.getId(), execution.getJobInstance().getJobName(), execution.getStatus().name(),
+                execution.getExitStatus().getExitCode(), execution.getCreateTime(), execution.getStartTime(),
+                execution.getEndTime(), steps);
+    }
+
+    public record StepStatus(String stepName, String status, long readCount, long writeCount, long skipCount,
+                             long commitCount) {
+
+        static StepStatus of(StepExecution execution) {
+            return new StepStatus(execution.getStepName(), execution.getStatus().name(), execution.getReadCount(),
+                    execution.getWriteCount(), execution.getSkipCount(), execution.getCommitCount());
+        }
+    }
+}
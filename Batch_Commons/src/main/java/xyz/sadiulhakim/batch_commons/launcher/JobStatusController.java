@@ -0,0 +1,23 @@
+package xyz.sadiulhakim.batch_commons.launcher;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/jobs")
+public class JobStatusController {
+
+    private final JobSubmissionService jobSubmissionService;
+
+    public JobStatusController(JobSubmissionService jobSubmissionService) {
+        this.jobSubmissionService = jobSubmissionService;
+    }
+
+    @GetMapping("/{executionId}")
+    ResponseEntity<JobStatus> status(@PathVariable long executionId) {
+        return ResponseEntity.of(jobSubmissionService.status(executionId));
+    }
+}
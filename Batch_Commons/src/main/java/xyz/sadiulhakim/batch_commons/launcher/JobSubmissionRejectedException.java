@@ -0,0 +1,13 @@
+package xyz.sadiulhakim.batch_commons.launcher;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Thrown when every worker of a job is busy and its queue is full, the client should try again later
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class JobSubmissionRejectedException extends RuntimeException {
+
+    public JobSubmissionRejectedException(String jobName, int capacity) {
+        super("Job " + jobName + " already has " + capacity + " executions running or queued");
+    }
+}
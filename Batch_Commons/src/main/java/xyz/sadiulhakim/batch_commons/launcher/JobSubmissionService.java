@@ -0,0 +1,125 @@
+package xyz.sadiulhakim.batch_commons.launcher;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersInvalidException;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.JobRestartException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Starts jobs in the background and returns as soon as the JobExecution is stored.
+ * <p>
+ * Every job name gets its own launcher with a fixed number of worker threads and a bounded queue, so a burst of
+ * requests cannot start an unlimited number of runs against the same files and tables. A submission that finds the
+ * workers busy and the queue full is rejected with {@link JobSubmissionRejectedException} before anything is written
+ * to the job repository.
+ * <p>
+ * {@code jobs.submission.concurrency} and {@code jobs.submission.queue-capacity} are the defaults, both can be set per
+ * job with {@code jobs.submission.<jobName>.concurrency} and {@code jobs.submission.<jobName>.queue-capacity}.
+ * <p>
+ * On shutdown no new submissions are taken, and running and queued executions get
+ * {@code jobs.submission.await-termination-seconds} to finish. Interrupting them would leave them STARTED in the job
+ * repository, and they could not be restarted.
+ */
+@Service
+public class JobSubmissionService {
+
+    private static final String PREFIX = "jobs.submission.";
+
+    private final JobRepository jobRepository;
+    private final JobExplorer jobExplorer;
+    private final Environment environment;
+    private final int concurrency;
+    private final int queueCapacity;
+    private final int awaitTerminationSeconds;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    public JobSubmissionService(JobRepository jobRepository, JobExplorer jobExplorer, Environment environment,
+                                @Value("${jobs.submission.concurrency:1}") int concurrency,
+                                @Value("${jobs.submission.queue-capacity:10}") int queueCapacity,
+                                @Value("${jobs.submission.await-termination-seconds:60}") int awaitTerminationSeconds) {
+        this.jobRepository = jobRepository;
+        this.jobExplorer = jobExplorer;
+        this.environment = environment;
+        this.concurrency = concurrency;
+        this.queueCapacity = queueCapacity;
+        this.awaitTerminationSeconds = awaitTerminationSeconds;
+    }
+
+    public JobExecution submit(Job job, JobParameters parameters) throws JobExecutionAlreadyRunningException,
+            JobRestartException, JobInstanceAlreadyCompleteException, JobParametersInvalidException {
+        Lane lane = lanes.computeIfAbsent(job.getName(), this::newLane);
+
+        // One permit per running or queued execution, the executor itself never sees more than it can hold
+        if (!lane.permits.tryAcquire()) {
+            throw new JobSubmissionRejectedException(job.getName(), lane.capacity);
+        }
+
+        try {
+            return lane.launcher.run(job, parameters);
+        } catch (RuntimeException | JobExecutionAlreadyRunningException | JobRestartException
+                 | JobInstanceAlreadyCompleteException | JobParametersInvalidException e) {
+            // Nothing was handed to the executor, so the decorator will not give the permit back
+            lane.permits.release();
+            throw e;
+        }
+    }
+
+    public Optional<JobStatus> status(long executionId) {
+        return Optional.ofNullable(jobExplorer.getJobExecution(executionId)).map(JobStatus::of);
+    }
+
+    private Lane newLane(String jobName) {
+        int threads = environment.getProperty(PREFIX + jobName + ".concurrency", Integer.class, concurrency);
+        int queue = environment.getProperty(PREFIX + jobName + ".queue-capacity", Integer.class, queueCapacity);
+        Semaphore permits = new Semaphore(threads + queue);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queue);
+        executor.setThreadNamePrefix(jobName + "-");
+        executor.setVirtualThreads(true);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(awaitTerminationSeconds);
+        executor.setTaskDecorator(task -> () -> {
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        });
+        executor.initialize();
+
+        TaskExecutorJobLauncher launcher = new TaskExecutorJobLauncher();
+        launcher.setJobRepository(jobRepository);
+        launcher.setTaskExecutor(executor);
+        return new Lane(executor, launcher, permits, threads + queue);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Every lane stops taking work first, so their jobs finish side by side while the lanes are awaited in turn
+        lanes.values().forEach(lane -> lane.executor.initiateShutdown());
+        lanes.values().forEach(lane -> lane.executor.shutdown());
+    }
+
+    private record Lane(ThreadPoolTaskExecutor executor, TaskExecutorJobLauncher launcher, Semaphore permits,
+                        int capacity) {
+    }
+}
@@ -0,0 +1,165 @@
+package xyz.sadiulhakim.batch_commons.source;
+
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Appends rows to a table as fast as the database takes them, used by the test data generator.
+ * <p>
+ * On PostgreSQL the rows are written in COPY text format and sent with {@code COPY ... FROM STDIN} every
+ * {@link #COPY_BUFFER_SIZE} characters. Other databases get multi-row {@code insert ... values (...),(...)} statements
+ * of {@link #ROWS_PER_INSERT} rows. Values are added column by column with {@link #value(long)},
+ * {@link #value(String)} and {@link #cents(long)}, followed by {@link #endRow()}. Not thread safe, one per thread.
+ */
+public class BulkRowWriter implements AutoCloseable {
+
+    static final int ROWS_PER_INSERT = 1_000;
+    private static final int COPY_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private final Connection connection;
+    private final String table;
+    private final String[] columns;
+    private final boolean postgres;
+
+    // COPY path
+    private final StringBuilder copyBuffer;
+    private final CopyManager copyManager;
+
+    // Multi-row insert path
+    private final Object[] values;
+    private PreparedStatement fullInsert;
+    private int column;
+    private int rows;
+
+    public BulkRowWriter(Connection connection, String table, String... columns) throws SQLException {
+        this.connection = connection;
+        this.table = table;
+        this.columns = columns;
+        this.postgres = "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+        this.copyBuffer = postgres ? new StringBuilder(COPY_BUFFER_SIZE + 1024) : null;
+        this.copyManager = postgres ? new CopyManager(connection.unwrap(BaseConnection.class)) : null;
+        this.values = postgres ? null : new Object[ROWS_PER_INSERT * columns.length];
+    }
+
+    public void value(long value) {
+        if (postgres) {
+            separator().append(value);
+        } else {
+            values[rows * columns.length + column] = value;
+        }
+        column++;
+    }
+
+    // Only for values without tabs, newlines and backslashes, which is all the generator produces
+    public void value(String value) {
+        if (postgres) {
+            separator().append(value);
+        } else {
+            values[rows * columns.length + column] = value;
+        }
+        column++;
+    }
+
+    // A numeric(x,2) value given in cents
+    public void cents(long cents) {
+        if (postgres) {
+            StringBuilder buffer = separator();
+            if (cents < 0) {
+                buffer.append('-');
+                cents = -cents;
+            }
+            buffer.append(cents / 100).append('.');
+            long fraction = cents % 100;
+            if (fraction < 10) {
+                buffer.append('0');
+            }
+            buffer.append(fraction);
+        } else {
+            values[rows * columns.length + column] = BigDecimal.valueOf(cents, 2);
+        }
+        column++;
+    }
+
+    public void endRow() throws SQLException {
+        if (column != columns.length) {
+            throw new IllegalStateException("Row has " + column + " values, " + table + " takes " + columns.length);
+        }
+        column = 0;
+        rows++;
+
+        if (postgres) {
+            copyBuffer.append('\n');
+            if (copyBuffer.length() >= COPY_BUFFER_SIZE) {
+                flush();
+            }
+        } else if (rows == ROWS_PER_INSERT) {
+            flush();
+        }
+    }
+
+    public void flush() throws SQLException {
+        if (rows == 0) {
+            return;
+        }
+
+        if (postgres) {
+            try {
+                copyManager.copyIn("COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN",
+                        new StringReader(copyBuffer.toString()));
+            } catch (IOException e) {
+                throw new SQLException("COPY into " + table + " failed", e);
+            }
+            copyBuffer.setLength(0);
+        } else if (rows == ROWS_PER_INSERT) {
+            if (fullInsert == null) {
+                fullInsert = connection.prepareStatement(insertSql(ROWS_PER_INSERT));
+            }
+            execute(fullInsert);
+        } else {
+            try (PreparedStatement ps = connection.prepareStatement(insertSql(rows))) {
+                execute(ps);
+            }
+        }
+        rows = 0;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            flush();
+        } finally {
+            if (fullInsert != null) {
+                fullInsert.close();
+            }
+        }
+    }
+
+    private StringBuilder separator() {
+        return column == 0 ? copyBuffer : copyBuffer.append('\t');
+    }
+
+    private void execute(PreparedStatement ps) throws SQLException {
+        int count = rows * columns.length;
+        for (int i = 0; i < count; i++) {
+            ps.setObject(i + 1, values[i]);
+        }
+        ps.executeUpdate();
+    }
+
+    private String insertSql(int rowCount) {
+        String row = "(" + "?,".repeat(columns.length - 1) + "?)";
+        StringBuilder sql = new StringBuilder(64 + rowCount * (row.length() + 1))
+                .append("insert into ").append(table).append(" (").append(String.join(", ", columns)).append(") values ");
+        for (int i = 0; i < rowCount; i++) {
+            sql.append(i == 0 ? row : "," + row);
+        }
+        return sql.toString();
+    }
+}
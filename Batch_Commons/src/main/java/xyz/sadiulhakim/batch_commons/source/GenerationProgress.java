@@ -0,0 +1,33 @@
+package xyz.sadiulhakim.batch_commons.source;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Rows written so far by the tasks of a test data generator, printed once per tenth of the total and not once per
+// task. Thread safe, the tasks share one.
+public class GenerationProgress {
+
+    private final long total;
+    private final String rows;
+    private final long start = System.nanoTime();
+    private final AtomicLong done = new AtomicLong();
+
+    // rows names what is generated in the printed line, e.g. "transactions"
+    public GenerationProgress(long total, String rows) {
+        this.total = total;
+        this.rows = rows;
+    }
+
+    // Called by a task once it has written count rows
+    public void add(long count) {
+        long now = done.addAndGet(count);
+        if (count == 0 || (now - count) * 10 / total == now * 10 / total) {
+            return;
+        }
+        System.out.printf("Generated %d %s, %.0f rows/s%n", now, rows, now / Math.max(seconds(), 1e-9));
+    }
+
+    // Since the generator was created
+    public double seconds() {
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
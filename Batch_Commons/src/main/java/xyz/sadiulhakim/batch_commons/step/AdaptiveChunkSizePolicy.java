@@ -0,0 +1,179 @@
+package xyz.sadiulhakim.batch_commons.step;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.context.RepeatContextSupport;
+import org.springframework.batch.repeat.policy.CompletionPolicySupport;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Completion policy that picks the chunk size at runtime instead of a fixed {@code chunk(n)}.
+ * <p>
+ * For every chunk it measures the time spent reading, processing and writing the items, and the time spent after the
+ * write (transaction commit plus the JobRepository update). The next chunk is made just big enough that this fixed
+ * per-chunk overhead stays under {@code targetOverhead} of the chunk time, within {@code [minChunkSize, maxChunkSize]}.
+ * The per item cost is taken over the items read, not the ones written: a step whose processor filters most items
+ * writes few or none, but still spends its time reading and processing all of them.
+ * <p>
+ * The policy must also be registered as {@link ChunkListener} and {@link ItemWriteListener} of the same step:
+ * <pre>
+ * AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(1, 1_000);
+ * new StepBuilder("step", jobRepository)
+ *         .&lt;I, O&gt;chunk(policy, transactionManager)
+ *         ...
+ *         .listener((ChunkListener) policy)
+ *         .listener((ItemWriteListener&lt;Object&gt;) policy)
+ * </pre>
+ * Estimates are kept per step execution, so one policy can serve concurrent partitions of the same worker step.
+ * The chunk size in use is stored in the step execution context under {@link #CHUNK_SIZE}.
+ */
+public class AdaptiveChunkSizePolicy extends CompletionPolicySupport implements ChunkListener, ItemWriteListener<Object> {
+
+    public static final String CHUNK_SIZE = "adaptive.chunk.size";
+
+    private static final double DEFAULT_TARGET_OVERHEAD = 0.05;
+
+    // Weight of the latest chunk in the moving averages
+    private static final double SMOOTHING = 0.3;
+
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final double targetOverhead;
+
+    // Chunks of a multi-threaded step run concurrently, so the timestamps are kept per thread
+    private final ThreadLocal<long[]> chunkTimes = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final Map<StepExecution, Estimate> estimates = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public AdaptiveChunkSizePolicy(int minChunkSize, int maxChunkSize) {
+        this(minChunkSize, maxChunkSize, DEFAULT_TARGET_OVERHEAD);
+    }
+
+    public AdaptiveChunkSizePolicy(int minChunkSize, int maxChunkSize, double targetOverhead) {
+        if (minChunkSize < 1 || maxChunkSize < minChunkSize) {
+            throw new IllegalArgumentException("Chunk size bounds must satisfy 1 <= min <= max, got ["
+                    + minChunkSize + ", " + maxChunkSize + "]");
+        }
+        if (targetOverhead <= 0 || targetOverhead >= 1) {
+            throw new IllegalArgumentException("Target overhead must be between 0 and 1, got " + targetOverhead);
+        }
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.targetOverhead = targetOverhead;
+    }
+
+    @Override
+    public RepeatContext start(RepeatContext parent) {
+        StepContext stepContext = StepSynchronizationManager.getContext();
+        int chunkSize = stepContext == null ? minChunkSize : estimate(stepContext.getStepExecution()).chunkSize;
+        return new ChunkSizeContext(parent, chunkSize);
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context) {
+        ChunkSizeContext chunkSizeContext = (ChunkSizeContext) context;
+        return chunkSizeContext.count >= chunkSizeContext.chunkSize;
+    }
+
+    @Override
+    public void update(RepeatContext context) {
+        ((ChunkSizeContext) context).count++;
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        long[] times = chunkTimes.get();
+        times[0] = System.nanoTime();
+        times[1] = 0;
+    }
+
+    @Override
+    public void afterWrite(Chunk<?> items) {
+        chunkTimes.get()[1] = System.nanoTime();
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        long[] times = chunkTimes.get();
+        long now = System.nanoTime();
+
+        // The write was not reached (failed chunk), there is nothing to learn from it
+        if (times[1] == 0) {
+            return;
+        }
+
+        StepExecution stepExecution = context.getStepContext().getStepExecution();
+        Estimate estimate = estimate(stepExecution);
+        synchronized (estimate) {
+            // The chunk's reads are already added to the step execution when afterChunk runs. With several threads
+            // committing at once this is what was read since the previous chunk ended, close enough for an average.
+            long readCount = stepExecution.getReadCount();
+            long items = readCount - estimate.readCount;
+            estimate.readCount = readCount;
+
+            // Nothing was read (last, empty chunk), there is nothing to learn from it
+            if (items <= 0) {
+                return;
+            }
+
+            double workPerItem = (double) (times[1] - times[0]) / items;
+            double overhead = now - times[1];
+            estimate.itemNanos = estimate.itemNanos == 0 ? workPerItem : smooth(estimate.itemNanos, workPerItem);
+            estimate.overheadNanos = estimate.overheadNanos == 0 ? overhead : smooth(estimate.overheadNanos, overhead);
+            estimate.chunkSize = nextChunkSize(estimate);
+            stepExecution.getExecutionContext().putInt(CHUNK_SIZE, estimate.chunkSize);
+        }
+    }
+
+    private Estimate estimate(StepExecution stepExecution) {
+        return estimates.computeIfAbsent(stepExecution, key -> new Estimate(minChunkSize));
+    }
+
+    // overhead / (overhead + n * itemNanos) <= targetOverhead  =>  n >= overhead * (1 - target) / (target * itemNanos)
+    private int nextChunkSize(Estimate estimate) {
+        double wanted = estimate.itemNanos <= 0
+                ? maxChunkSize
+                : Math.ceil(estimate.overheadNanos * (1 - targetOverhead) / (targetOverhead * estimate.itemNanos));
+
+        // Grow at most 2x per chunk so a single slow commit does not blow the chunk (and the rollback cost) up
+        wanted = Math.min(wanted, (double) estimate.chunkSize * 2);
+        return (int) Math.max(minChunkSize, Math.min(maxChunkSize, wanted));
+    }
+
+    private static double smooth(double average, double latest) {
+        return average + SMOOTHING * (latest - average);
+    }
+
+    // Moving averages of one step execution, updated under its own lock by multi-threaded steps
+    private static class Estimate {
+
+        private volatile int chunkSize;
+        private double itemNanos;
+        private double overheadNanos;
+        private long readCount;
+
+        private Estimate(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+    }
+
+    private static class ChunkSizeContext extends RepeatContextSupport {
+
+        private final int chunkSize;
+        private int count;
+
+        private ChunkSizeContext(RepeatContext parent, int chunkSize) {
+            super(parent);
+            this.chunkSize = chunkSize;
+        }
+    }
+}
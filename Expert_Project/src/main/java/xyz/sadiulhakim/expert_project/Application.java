@@ -3,12 +3,17 @@ package xyz.sadiulhakim.expert_project;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
+import xyz.sadiulhakim.batch_commons.launcher.JobStatusController;
+import xyz.sadiulhakim.batch_commons.launcher.JobSubmissionService;
 import xyz.sadiulhakim.expert_project.pojo.UserScoreUpdate;
 import xyz.sadiulhakim.expert_project.source.GenerateSourceDatabase;
 import xyz.sadiulhakim.expert_project.source.SourceDatabaseUtils;
 
+// JobSubmissionService and its status endpoint come from Batch_Commons, outside the scanned packages
 @SpringBootApplication
+@Import({JobSubmissionService.class, JobStatusController.class})
 public class Application implements CommandLineRunner {
 
     private final GenerateSourceDatabase sourceDatabase;
@@ -9,8 +9,6 @@ import org.springframework.batch.core.configuration.annotation.EnableBatchProces
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.AbstractJob;
 import org.springframework.batch.core.job.builder.JobBuilder;
-import org.springframework.batch.core.launch.JobLauncher;
-import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.item.*;
@@ -50,18 +48,6 @@ public class UserScoreProcessor {
                 .build();
     }
 
-    @Bean
-    @Qualifier("asyncJobLauncher")
-    JobLauncher asyncJobLauncher(JobRepository jobRepository) {
-        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor();
-        taskExecutor.setVirtualThreads(true);
-
-        TaskExecutorJobLauncher jobLauncher = new TaskExecutorJobLauncher();
-        jobLauncher.setTaskExecutor(taskExecutor);
-        jobLauncher.setJobRepository(jobRepository);
-        return jobLauncher;
-    }
-
     @Bean
     @StepScope
     @Qualifier("sessionActionReader")
@@ -1,10 +1,10 @@
 package xyz.sadiulhakim.expert_project.controller;
 
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
 import org.springframework.batch.core.JobParametersInvalidException;
-import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
 import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
 import org.springframework.batch.core.repository.JobRestartException;
@@ -12,30 +12,35 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
+import xyz.sadiulhakim.batch_commons.launcher.JobStatus;
+import xyz.sadiulhakim.batch_commons.launcher.JobSubmissionService;
 
+import java.net.URI;
 import java.util.UUID;
 
 @RestController
 public class JobController {
 
-    @Qualifier("asyncJobLauncher")
-    private final JobLauncher jobLauncher;
+    private final JobSubmissionService jobSubmissionService;
 
     @Qualifier("singleThreadJob")
     private final Job singleThreadJob;
 
-    public JobController(JobLauncher jobLauncher, Job singleThreadJob) {
-        this.jobLauncher = jobLauncher;
+    public JobController(JobSubmissionService jobSubmissionService, Job singleThreadJob) {
+        this.jobSubmissionService = jobSubmissionService;
         this.singleThreadJob = singleThreadJob;
     }
 
+    // Returns 202 with the execution id right away, progress is at /jobs/{executionId}
     @GetMapping("/single-thread-job")
-    ResponseEntity<?> singleThreadJob() throws JobInstanceAlreadyCompleteException, JobExecutionAlreadyRunningException, JobParametersInvalidException, JobRestartException {
+    ResponseEntity<JobStatus> singleThreadJob() throws JobInstanceAlreadyCompleteException, JobExecutionAlreadyRunningException, JobParametersInvalidException, JobRestartException {
         JobParameters parameters = new JobParametersBuilder()
                 .addString("id", UUID.randomUUID().toString())
                 .toJobParameters();
 
-        jobLauncher.run(singleThreadJob, parameters);
-        return ResponseEntity.ok("Done");
+        JobExecution execution = jobSubmissionService.submit(singleThreadJob, parameters);
+        return ResponseEntity.accepted()
+                .location(URI.create("/jobs/" + execution.getId()))
+                .body(JobStatus.of(execution));
     }
 }
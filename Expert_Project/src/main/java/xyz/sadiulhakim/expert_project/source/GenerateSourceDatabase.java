@@ -1,20 +1,55 @@
 package xyz.sadiulhakim.expert_project.source;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import xyz.sadiulhakim.batch_commons.source.BulkRowWriter;
+import xyz.sadiulhakim.batch_commons.source.GenerationProgress;
+import xyz.sadiulhakim.batch_commons.source.ZipfSampler;
 import xyz.sadiulhakim.expert_project.pojo.SessionAction;
 import xyz.sadiulhakim.expert_project.pojo.UserScoreUpdate;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * Fills the session action table with random actions for load tests.
+ * <p>
+ * Size, users and seed are configurable under {@code source.generate.*}. The ids are cut into blocks of
+ * {@link #ROWS_PER_TASK} rows, every block is generated from its own seed by one task and streamed with COPY on
+ * PostgreSQL or multi-row inserts elsewhere (see {@link BulkRowWriter}), so the same seed gives the same table whatever
+ * the number of threads.
+ * <p>
+ * {@code user-skew} is the exponent of a Zipf distribution over the users, 0 picks them uniformly and around 1 gives a
+ * few hot users most of the actions, which is what unbalances the user_id partitions of the job.
+ */
 @Component
 public class GenerateSourceDatabase {
 
+    private static final int ROWS_PER_TASK = 100_000;
+    private static final String[] COLUMNS = {"id", "user_id", "action_type", "amount"};
+
     private final JdbcTemplate jdbcTemplate;
 
-    private static final int USER_COUNT = 100;
-    private static final int RECORD_COUNT = 1000;
-    private static final Random RANDOM = new Random();
+    @Value("${source.generate.records:1000}")
+    private long recordCount;
+    @Value("${source.generate.users:100}")
+    private int userCount;
+    @Value("${source.generate.user-skew:0}")
+    private double userSkew;
+    // -1 picks a new seed every time, it is printed so a run can be repeated
+    @Value("${source.generate.seed:-1}")
+    private long seed;
+    // 0 uses one thread per core
+    @Value("${source.generate.threads:0}")
+    private int threads;
 
     public GenerateSourceDatabase(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
@@ -26,23 +61,73 @@ public class GenerateSourceDatabase {
         SourceDatabaseUtils.dropTableIfExists(jdbcTemplate, SessionAction.SESSION_ACTION_TABLE_NAME);
         SourceDatabaseUtils.createSessionActionTable(jdbcTemplate, SessionAction.SESSION_ACTION_TABLE_NAME);
 
-        for (int i = 0; i < RECORD_COUNT; i++) {
-            SourceDatabaseUtils.insertSessionAction(jdbcTemplate, generateRecord(i + 1), SessionAction.SESSION_ACTION_TABLE_NAME);
+        long runSeed = seed == -1 ? new Random().nextLong() : seed;
+        ZipfSampler userSampler = new ZipfSampler(userCount, userSkew);
+
+        int threadCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        GenerationProgress progress = new GenerationProgress(recordCount, "session actions");
+        try (ExecutorService executor = Executors.newFixedThreadPool(threadCount)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (long firstId = 0, task = 1; firstId < recordCount; firstId += ROWS_PER_TASK, task++) {
+                long from = firstId;
+                long to = Math.min(recordCount, firstId + ROWS_PER_TASK);
+                SplittableRandom random = new SplittableRandom(runSeed + task * 0x9E3779B97F4A7C15L);
+                futures.add(executor.submit(() -> {
+                    generateRange(from, to, random, userSampler);
+                    progress.add(to - from);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating session actions", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not generate session actions", e.getCause());
+        }
+
+        // The ids were given explicitly, move the serial sequence past them so later inserts still work
+        if (isPostgres()) {
+            jdbcTemplate.execute("select setval(pg_get_serial_sequence('" + SessionAction.SESSION_ACTION_TABLE_NAME + "', 'id'), " +
+                    "coalesce((select max(id) from " + SessionAction.SESSION_ACTION_TABLE_NAME + "), 0) + 1, false)");
         }
 
         SourceDatabaseUtils.dropTableIfExists(jdbcTemplate, UserScoreUpdate.USER_SCORE_TABLE_NAME);
         SourceDatabaseUtils.createUserScoreTable(jdbcTemplate, UserScoreUpdate.USER_SCORE_TABLE_NAME);
 
         // Print to console the success message
-        System.out.println("Input source table with " + RECORD_COUNT + " records is successfully initialized");
+        double seconds = progress.seconds();
+        System.out.printf("Input source table with %d records is successfully initialized in %.1f s (%.0f rows/s, seed %d)%n",
+                recordCount, seconds, recordCount / seconds, runSeed);
     }
 
-    // Generate random session action record
-    private SessionAction generateRecord(long id) {
-        long userId = 1 + RANDOM.nextInt(USER_COUNT);
-        return RANDOM.nextBoolean()
-                ? new SessionAction(id, userId, SourceDatabaseUtils.PLUS_TYPE, 1 + RANDOM.nextInt(3))
-                : new SessionAction(id, userId, SourceDatabaseUtils.MULTI_TYPE, ((double) (1 + RANDOM.nextInt(5))) / 10 + 1d);
+    // Generate the random session actions with ids from + 1 .. to
+    private void generateRange(long from, long to, SplittableRandom random, ZipfSampler userSampler) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (BulkRowWriter writer = new BulkRowWriter(connection, SessionAction.SESSION_ACTION_TABLE_NAME, COLUMNS)) {
+                for (long id = from + 1; id <= to; id++) {
+                    writer.value(id);
+                    writer.value(1 + userSampler.sample(random));
+                    if (random.nextBoolean()) {
+                        // Adds 1, 2 or 3
+                        writer.value(SourceDatabaseUtils.PLUS_TYPE);
+                        writer.cents(100L * (1 + random.nextInt(3)));
+                    } else {
+                        // Multiplies by 1.1 .. 1.5
+                        writer.value(SourceDatabaseUtils.MULTI_TYPE);
+                        writer.cents(100 + 10L * (1 + random.nextInt(5)));
+                    }
+                    writer.endRow();
+                }
+            }
+            return null;
+        });
     }
 
+    private boolean isPostgres() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName())));
+    }
 }
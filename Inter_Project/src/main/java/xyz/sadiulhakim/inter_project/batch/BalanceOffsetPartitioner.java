@@ -0,0 +1,104 @@
+package xyz.sadiulhakim.inter_project.batch;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Splits bank_transaction_yearly into gridSize id ranges and works out the balance every range starts from.
+ * <p>
+ * Phase 1 of the partitioned fill balance step: the amount of every range is summed with its own query, all ranges in
+ * parallel. A prefix sum over those totals gives the opening balance of each range, which goes into the partition's
+ * ExecutionContext under {@link FillBalanceProcessor#BALANCE_SO_FAR}. The workers (phase 2) then fill the balances of
+ * their ranges in parallel, each continuing from its opening balance.
+ * <p>
+ * Everything is kept in cents as a long, so the offsets are exact. The partition contexts are saved before the workers
+ * start, a restart reuses them instead of summing again.
+ */
+public class BalanceOffsetPartitioner implements Partitioner {
+
+    public static final String MIN_ID = "minId";
+    public static final String MAX_ID = "maxId";
+    private static final String PARTITION_NAME_PREFIX = "balancePartition-";
+    private static final String SUM_QUERY = "select coalesce(sum(amount), 0) from bank_transaction_yearly where id between ? and ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BalanceOffsetPartitioner(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("select min(id) as min_id, max(id) as max_id from bank_transaction_yearly");
+        Map<String, ExecutionContext> partitionMap = new LinkedHashMap<>(gridSize);
+        if (bounds.get("min_id") == null) {
+            // Empty table, one empty range keeps the step and its listener working as usual
+            partitionMap.put(partitionName(0), context(1, 0, 0));
+            return partitionMap;
+        }
+
+        long minId = ((Number) bounds.get("min_id")).longValue();
+        long maxId = ((Number) bounds.get("max_id")).longValue();
+        long rangeSize = (maxId - minId) / gridSize + 1;
+
+        List<long[]> ranges = new ArrayList<>(gridSize);
+        for (long start = minId; start <= maxId; start += rangeSize) {
+            ranges.add(new long[]{start, Math.min(start + rangeSize - 1, maxId)});
+        }
+
+        List<Long> sums = sumRanges(ranges);
+        long balance = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            partitionMap.put(partitionName(i), context(range[0], range[1], balance));
+            balance = Math.addExact(balance, sums.get(i));
+        }
+        return partitionMap;
+    }
+
+    // Runs one sum query per range at the same time, every query is a primary key range scan
+    private List<Long> sumRanges(List<long[]> ranges) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<BigDecimal>> futures = new ArrayList<>(ranges.size());
+            for (long[] range : ranges) {
+                futures.add(executor.submit(() -> jdbcTemplate.queryForObject(SUM_QUERY, BigDecimal.class, range[0], range[1])));
+            }
+
+            List<Long> sums = new ArrayList<>(ranges.size());
+            for (Future<BigDecimal> future : futures) {
+                sums.add(FillBalanceProcessor.toCents(future.get()));
+            }
+            return sums;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while summing the transaction ranges", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not sum the transaction ranges", e.getCause());
+        }
+    }
+
+    private static ExecutionContext context(long minId, long maxId, long openingBalance) {
+        ExecutionContext executionContext = new ExecutionContext();
+        executionContext.putLong(MIN_ID, minId);
+        executionContext.putLong(MAX_ID, maxId);
+        executionContext.putLong(FillBalanceProcessor.BALANCE_SO_FAR, openingBalance);
+        return executionContext;
+    }
+
+    // Zero padded so the partitions sort in id order
+    private static String partitionName(int index) {
+        return PARTITION_NAME_PREFIX + String.format("%04d", index);
+    }
+}
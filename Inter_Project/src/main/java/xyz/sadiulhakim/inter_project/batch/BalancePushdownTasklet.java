@@ -0,0 +1,41 @@
+package xyz.sadiulhakim.inter_project.batch;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Statement;
+
+// Fills the whole balance column with one statement, the running balance is computed by the database with a window
+// function and nothing goes through the JVM. UPDATE ... FROM on PostgreSQL, MERGE on databases without it (H2).
+public class BalancePushdownTasklet implements Tasklet {
+
+    private static final String RUNNING_BALANCE = "select id, sum(amount) over (order by id) as balance from bank_transaction_yearly";
+    private static final String UPDATE_FROM_SQL = "update bank_transaction_yearly t set balance = r.balance " +
+            "from (" + RUNNING_BALANCE + ") r where t.id = r.id";
+    private static final String MERGE_SQL = "merge into bank_transaction_yearly t using (" + RUNNING_BALANCE + ") r " +
+            "on t.id = r.id when matched then update set balance = r.balance";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BalancePushdownTasklet(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) {
+        Integer updated = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            boolean postgres = "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+            try (Statement statement = connection.createStatement()) {
+                return statement.executeUpdate(postgres ? UPDATE_FROM_SQL : MERGE_SQL);
+            }
+        });
+
+        contribution.incrementWriteCount(updated == null ? 0 : updated);
+        return RepeatStatus.FINISHED;
+    }
+}
@@ -0,0 +1,127 @@
+package xyz.sadiulhakim.inter_project.batch;
+
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import xyz.sadiulhakim.inter_project.pojo.BalanceUpdate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Writes a chunk of balances with one set based UPDATE instead of one {@code update ... where id = ?} per row.
+ * <p>
+ * The chunk's (id, balance) pairs go into the session's temporary table balance_staging first: through
+ * {@code COPY ... FROM STDIN} on PostgreSQL, through multi-row inserts on any other database. Then a single statement
+ * joins the staging table to bank_transaction_yearly, {@code UPDATE ... FROM} on PostgreSQL and {@code MERGE} elsewhere.
+ * <p>
+ * The temporary table is created once per connection and emptied on every commit, so partition workers on different
+ * connections never see each other's rows and a failed chunk is rolled back together with its staged rows.
+ */
+public class BalanceStagingWriter implements ItemWriter<BalanceUpdate> {
+
+    // 2 parameters a row keeps a full statement well below the parameter limits of the drivers
+    static final int ROWS_PER_INSERT = 1_000;
+
+    private static final String CREATE_STAGING_SQL = "create local temporary table if not exists balance_staging " +
+            "(id bigint primary key, balance numeric(10,2) not null) on commit delete rows";
+    private static final String COPY_SQL = "COPY balance_staging(id, balance) FROM STDIN";
+    private static final String UPDATE_FROM_SQL = "update bank_transaction_yearly t set balance = s.balance " +
+            "from balance_staging s where t.id = s.id";
+    private static final String MERGE_SQL = "merge into bank_transaction_yearly t using balance_staging s on t.id = s.id " +
+            "when matched then update set balance = s.balance";
+    private static final String FULL_INSERT_SQL = insertSql(ROWS_PER_INSERT);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Decided on the first chunk from the connection metadata
+    private volatile Boolean postgres;
+
+    public BalanceStagingWriter(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void write(Chunk<? extends BalanceUpdate> chunk) throws Exception {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean isPostgres = isPostgres(connection);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_STAGING_SQL);
+            }
+
+            if (isPostgres) {
+                PostgresCopy.copy(connection, chunk.getItems());
+            } else {
+                insert(connection, chunk.getItems());
+            }
+
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate(isPostgres ? UPDATE_FROM_SQL : MERGE_SQL);
+            }
+            return null;
+        });
+    }
+
+    private boolean isPostgres(Connection connection) throws SQLException {
+        if (postgres == null) {
+            postgres = "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+        }
+        return postgres;
+    }
+
+    private static void insert(Connection connection, List<? extends BalanceUpdate> items) throws SQLException {
+        for (int from = 0; from < items.size(); from += ROWS_PER_INSERT) {
+            int rows = Math.min(ROWS_PER_INSERT, items.size() - from);
+
+            // Every full statement has the same text, only the last one of the chunk can be shorter
+            try (PreparedStatement ps = connection.prepareStatement(rows == ROWS_PER_INSERT ? FULL_INSERT_SQL : insertSql(rows))) {
+                int parameter = 1;
+                for (int i = from; i < from + rows; i++) {
+                    BalanceUpdate item = items.get(i);
+                    ps.setLong(parameter++, item.id());
+                    ps.setBigDecimal(parameter++, item.balance());
+                }
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(48 + rows * 6).append("insert into balance_staging(id, balance) values ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?,?)" : ",(?,?)");
+        }
+        return sql.toString();
+    }
+
+    // Only loaded when the database is PostgreSQL
+    private static final class PostgresCopy {
+
+        private static void copy(Connection connection, List<? extends BalanceUpdate> items) throws SQLException {
+            // Text format, ids and plain decimals never need escaping
+            StringBuilder rows = new StringBuilder(items.size() * 24);
+            for (BalanceUpdate item : items) {
+                rows.append(item.id()).append('\t').append(item.balance().toPlainString()).append('\n');
+            }
+
+            try {
+                new CopyManager(connection.unwrap(BaseConnection.class)).copyIn(COPY_SQL, new StringReader(rows.toString()));
+            } catch (IOException e) {
+                throw new SQLException("COPY into balance_staging failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package xyz.sadiulhakim.inter_project.batch;
+
+// How fillBalanceStep stores the running balances, set with bank.balance.write-mode
+public enum BalanceWriteMode {
+    // One update ... where id = ? per transaction
+    UPDATE,
+    // Every chunk is staged in a temporary table and applied with one set based update, see BalanceStagingWriter
+    STAGED,
+    // No reader or writer, the database computes the whole column, see BalancePushdownTasklet
+    PUSHDOWN
+}
@@ -1,6 +1,8 @@
 package xyz.sadiulhakim.inter_project.batch;
 
 import org.springframework.batch.core.*;
+import org.springframework.batch.core.configuration.annotation.JobScope;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.configuration.support.DefaultBatchConfiguration;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.repository.JobRepository;
@@ -12,12 +14,15 @@ import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilde
 import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
 import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
 import org.springframework.batch.item.json.JacksonJsonObjectMarshaller;
+import org.springframework.batch.item.support.ListItemReader;
 import org.springframework.batch.item.json.builder.JsonFileItemWriterBuilder;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.WritableResource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.PlatformTransactionManager;
 import xyz.sadiulhakim.inter_project.pojo.BalanceUpdate;
 import xyz.sadiulhakim.inter_project.pojo.BankTransaction;
@@ -26,6 +31,7 @@ import xyz.sadiulhakim.inter_project.pojo.MerchantMonthBalance;
 import xyz.sadiulhakim.inter_project.util.SourceManagementUtils;
 
 import javax.sql.DataSource;
+import java.math.BigDecimal;
 
 @Configuration
 public class BankTransactionJobConfig extends DefaultBatchConfiguration {
@@ -40,6 +46,22 @@ public class BankTransactionJobConfig extends DefaultBatchConfiguration {
     @Value("file:D:\\Hakim_Code\\learn_batch\\staticFiles\\intermediate\\dailyBalance.json")
     private WritableResource dailyBalance;
 
+    // Number of id ranges the balances are filled in, 1 keeps the single threaded fillBalanceStep
+    @Value("${bank.balance.partition.grid-size:1}")
+    private int balanceGridSize;
+
+    // How many id ranges are filled at the same time, 0 means one per core
+    @Value("${bank.balance.partition.concurrency:0}")
+    private int balanceConcurrency;
+
+    // UPDATE writes row by row, STAGED applies every chunk with one update and PUSHDOWN fills the column in the database
+    @Value("${bank.balance.write-mode:UPDATE}")
+    private BalanceWriteMode balanceWriteMode;
+
+    // Computes the month-merchant and day-month sums in one scan of the table instead of paging GROUP BY queries
+    @Value("${bank.aggregation.single-scan:false}")
+    private boolean aggregationSingleScan;
+
     @Bean
     @Qualifier("bankTransactionReader")
     JdbcCursorItemReader<BankTransaction> bankTransactionReader(DataSource dataSource) {
@@ -51,13 +73,57 @@ public class BankTransactionJobConfig extends DefaultBatchConfiguration {
                 .build();
     }
 
+    @Bean
+    @StepScope
+    @Qualifier("partitionBankTransactionReader")
+    JdbcCursorItemReader<BankTransaction> partitionBankTransactionReader(DataSource dataSource,
+                                                                         @Value("#{stepExecutionContext['minId']}") Long minId,
+                                                                         @Value("#{stepExecutionContext['maxId']}") Long maxId) {
+        return new JdbcCursorItemReaderBuilder<BankTransaction>()
+                .name("partitionBankTransactionReader")
+                .dataSource(dataSource)
+                .sql(BankTransaction.SELECT_RANGE_QUERY)
+                .preparedStatementSetter(ps -> {
+                    ps.setLong(1, minId);
+                    ps.setLong(2, maxId);
+                })
+                .rowMapper(BankTransaction.ROW_MAPPER)
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    @Qualifier("partitionFillBalanceProcessor")
+    FillBalanceProcessor partitionFillBalanceProcessor(@Value("#{stepExecution}") StepExecution stepExecution) {
+        // The worker's context starts out as the partition context, so BALANCE_SO_FAR is the range's opening balance
+        FillBalanceProcessor processor = new FillBalanceProcessor();
+        processor.setStepExecution(stepExecution);
+        return processor;
+    }
+
+    // Also a listener of merchantMonthlyAmountStep, it builds the grouped table before the step and drops it after
+    @Bean
+    @Qualifier("merchantMonthlyAmountQueryProvider")
+    MaterializedGroupPagingQueryProvider merchantMonthlyAmountQueryProvider() {
+        return new MaterializedGroupPagingQueryProvider("merchant_month_balance_page", MerchantMonthBalance.SELECT_CLAUSE,
+                MerchantMonthBalance.FROM_CLAUSE, MerchantMonthBalance.GROUP_CLAUSE, MerchantMonthBalance.sortKeys());
+    }
+
+    // Also a listener of dailyBalanceStep
+    @Bean
+    @Qualifier("dailyBalanceQueryProvider")
+    MaterializedGroupPagingQueryProvider dailyBalanceQueryProvider() {
+        return new MaterializedGroupPagingQueryProvider("daily_balance_page", DailyBalance.SELECT_CLAUSE,
+                DailyBalance.FROM_CLAUSE, DailyBalance.GROUP_CLAUSE, DailyBalance.sortKeys());
+    }
+
     @Bean
     @Qualifier("merchantMonthlyAmountReader")
     ItemReader<MerchantMonthBalance> merchantMonthlyAmountReader(DataSource dataSource) {
         return new JdbcPagingItemReaderBuilder<MerchantMonthBalance>()
                 .name("merchantMonthlyAmountReader")
                 .dataSource(dataSource)
-                .queryProvider(MerchantMonthBalance.getQueryProvider())
+                .queryProvider(merchantMonthlyAmountQueryProvider())
                 .rowMapper(MerchantMonthBalance.ROW_MAPPER)
                 .pageSize(5)
                 .build();
@@ -69,15 +135,39 @@ public class BankTransactionJobConfig extends DefaultBatchConfiguration {
         return new JdbcPagingItemReaderBuilder<DailyBalance>()
                 .name("dailyBalanceReader")
                 .dataSource(dataSource)
-                .queryProvider(DailyBalance.getQueryProvider())
+                .queryProvider(dailyBalanceQueryProvider())
                 .rowMapper(DailyBalance.ROW_MAPPER)
                 .pageSize(5)
                 .build();
     }
 
+    @Bean
+    @JobScope
+    TransactionAggregates transactionAggregates(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        return new TransactionAggregates(dataSource, transactionManager);
+    }
+
+    @Bean
+    @StepScope
+    @Qualifier("aggregatedMerchantMonthlyAmountReader")
+    ListItemReader<MerchantMonthBalance> aggregatedMerchantMonthlyAmountReader(TransactionAggregates transactionAggregates) {
+        return new ListItemReader<>(transactionAggregates.merchantMonthBalances());
+    }
+
+    @Bean
+    @StepScope
+    @Qualifier("aggregatedDailyBalanceReader")
+    ListItemReader<DailyBalance> aggregatedDailyBalanceReader(TransactionAggregates transactionAggregates) {
+        return new ListItemReader<>(transactionAggregates.dailyBalances());
+    }
+
     @Bean
     @Qualifier("balanceWriter")
     ItemWriter<BalanceUpdate> balanceWriter(DataSource dataSource) {
+        if (balanceWriteMode == BalanceWriteMode.STAGED) {
+            return new BalanceStagingWriter(dataSource);
+        }
+
         return new JdbcBatchItemWriterBuilder<BalanceUpdate>()
                 .dataSource(dataSource)
                 .itemPreparedStatementSetter((item, ps) -> {
@@ -115,7 +205,7 @@ public class BankTransactionJobConfig extends DefaultBatchConfiguration {
 
         FillBalanceProcessor processor = new FillBalanceProcessor();
         return new StepBuilder("fillBalanceStep", jobRepository)
-                .<BankTransaction, BalanceUpdate>chunk(10, transactionManager)
+                .<BankTransaction, BalanceUpdate>chunk(1000, transactionManager)
                 .reader(bankTransactionReader(dataSource))
                 .processor(processor)
                 .writer(balanceWriter(dataSource))
@@ -128,7 +218,7 @@ public class BankTransactionJobConfig extends DefaultBatchConfiguration {
 
                     @Override
                     public ExitStatus afterStep(StepExecution stepExecution) {
-                        double totalBalance = processor.getLatestTransactionBalance();
+                        long totalBalance = processor.getLatestTransactionBalance();
                         processor.setStepExecution(null);
 
                         // Return custom ExitStatus so that we can control the Jobs Step execution flow later.
@@ -139,14 +229,74 @@ public class BankTransactionJobConfig extends DefaultBatchConfiguration {
                 .build();
     }
 
+    @Bean
+    @Qualifier("fillBalanceWorkerStep")
+    Step fillBalanceWorkerStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
+                               DataSource dataSource,
+                               @Qualifier("partitionBankTransactionReader") JdbcCursorItemReader<BankTransaction> partitionBankTransactionReader,
+                               @Qualifier("partitionFillBalanceProcessor") FillBalanceProcessor partitionFillBalanceProcessor) {
+        return new StepBuilder("fillBalanceWorkerStep", jobRepository)
+                .<BankTransaction, BalanceUpdate>chunk(1000, transactionManager)
+                .reader(partitionBankTransactionReader)
+                .processor(partitionFillBalanceProcessor)
+                .writer(balanceWriter(dataSource))
+                .allowStartIfComplete(true)
+                .build();
+    }
+
+    @Bean
+    @Qualifier("partitionedFillBalanceStep")
+    Step partitionedFillBalanceStep(JobRepository jobRepository, DataSource dataSource,
+                                    @Qualifier("fillBalanceWorkerStep") Step fillBalanceWorkerStep) {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor();
+        taskExecutor.setVirtualThreads(true);
+
+        // Every worker holds a cursor connection and a transaction connection, so a large grid must not start all of
+        // its workers at once against the connection pool
+        taskExecutor.setConcurrencyLimit(balanceConcurrency > 0 ? balanceConcurrency
+                : Runtime.getRuntime().availableProcessors());
+
+        // The partitioner sums every id range and hands each worker its opening balance, the workers then fill
+        // their ranges at the same time
+        return new StepBuilder("partitionedFillBalanceStep", jobRepository)
+                .partitioner("fillBalanceWorkerStep", new BalanceOffsetPartitioner(dataSource))
+                .step(fillBalanceWorkerStep)
+                .gridSize(balanceGridSize)
+                .taskExecutor(taskExecutor)
+                .listener(new TotalBalanceListener(dataSource))
+                .allowStartIfComplete(true)
+                .build();
+    }
+
+    @Bean
+    @Qualifier("pushdownFillBalanceStep")
+    Step pushdownFillBalanceStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
+                                 DataSource dataSource) {
+        return new StepBuilder("pushdownFillBalanceStep", jobRepository)
+                .tasklet(new BalancePushdownTasklet(dataSource), transactionManager)
+                .listener(new TotalBalanceListener(dataSource))
+                .allowStartIfComplete(true)
+                .build();
+    }
+
     @Bean
     @Qualifier("merchantMonthlyAmountStep")
     Step merchantMonthlyAmountStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
-                                   DataSource dataSource) {
+                                   DataSource dataSource, TransactionAggregates transactionAggregates) {
+        if (aggregationSingleScan) {
+            return new StepBuilder("merchantMonthlyAmountStep", jobRepository)
+                    .<MerchantMonthBalance, MerchantMonthBalance>chunk(10, transactionManager)
+                    .reader(aggregatedMerchantMonthlyAmountReader(transactionAggregates))
+                    .writer(merchantMonthlyAmountWriter())
+                    .allowStartIfComplete(true)
+                    .build();
+        }
+
         return new StepBuilder("merchantMonthlyAmountStep", jobRepository)
                 .<MerchantMonthBalance, MerchantMonthBalance>chunk(10, transactionManager)
                 .reader(merchantMonthlyAmountReader(dataSource))
                 .writer(merchantMonthlyAmountWriter())
+                .listener(merchantMonthlyAmountQueryProvider())
                 .allowStartIfComplete(true)
                 .build();
     }
@@ -154,21 +304,35 @@ public class BankTransactionJobConfig extends DefaultBatchConfiguration {
     @Bean
     @Qualifier("dailyBalanceStep")
     Step dailyBalanceStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
-                          DataSource dataSource) {
+                          DataSource dataSource, TransactionAggregates transactionAggregates) {
+        if (aggregationSingleScan) {
+            return new StepBuilder("dailyBalanceStep", jobRepository)
+                    .<DailyBalance, DailyBalance>chunk(10, transactionManager)
+                    .reader(aggregatedDailyBalanceReader(transactionAggregates))
+                    .writer(dailyBalanceWriter())
+                    .allowStartIfComplete(true)
+                    .build();
+        }
+
         return new StepBuilder("dailyBalanceStep", jobRepository)
                 .<DailyBalance, DailyBalance>chunk(10, transactionManager)
                 .reader(dailyBalanceReader(dataSource))
                 .writer(dailyBalanceWriter())
+                .listener(dailyBalanceQueryProvider())
                 .allowStartIfComplete(true)
                 .build();
     }
 
     @Bean
     Job bankTransactionJob(JobRepository jobRepository,
-                           @Qualifier("fillBalanceStep") Step fillBalanceStep,
+                           @Qualifier("fillBalanceStep") Step sequentialFillBalanceStep,
+                           @Qualifier("partitionedFillBalanceStep") Step partitionedFillBalanceStep,
+                           @Qualifier("pushdownFillBalanceStep") Step pushdownFillBalanceStep,
                            @Qualifier("merchantMonthlyAmountStep") Step merchantMonthlyAmountStep,
                            @Qualifier("dailyBalanceStep") Step dailyBalanceStep
     ) {
+        Step fillBalanceStep = balanceWriteMode == BalanceWriteMode.PUSHDOWN ? pushdownFillBalanceStep
+                : balanceGridSize > 1 ? partitionedFillBalanceStep : sequentialFillBalanceStep;
         return new JobBuilder("bankTransactionJob", jobRepository)
                 .start(fillBalanceStep).on(POSITIVE).to(merchantMonthlyAmountStep)
                 .from(fillBalanceStep).on(NEGATIVE).to(dailyBalanceStep)
@@ -176,4 +340,31 @@ public class BankTransactionJobConfig extends DefaultBatchConfiguration {
                 .end()
                 .build();
     }
+
+    // Adds the balance column before and, when the balances were not filled by FillBalanceProcessor, returns
+    // POSITIVE or NEGATIVE from the balance of the last transaction, which is the total
+    private static class TotalBalanceListener implements StepExecutionListener {
+
+        private final DataSource dataSource;
+
+        private TotalBalanceListener(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Override
+        public void beforeStep(StepExecution stepExecution) {
+            SourceManagementUtils.addBalanceColumn(dataSource);
+        }
+
+        @Override
+        public ExitStatus afterStep(StepExecution stepExecution) {
+            if (ExitStatus.FAILED.getExitCode().equals(stepExecution.getExitStatus().getExitCode())) {
+                return stepExecution.getExitStatus();
+            }
+
+            BigDecimal totalBalance = new JdbcTemplate(dataSource)
+                    .query(BankTransaction.LAST_BALANCE_QUERY, rs -> rs.next() ? rs.getBigDecimal(1) : BigDecimal.ZERO);
+            return new ExitStatus(totalBalance == null || totalBalance.signum() >= 0 ? POSITIVE : NEGATIVE);
+        }
+    }
 }
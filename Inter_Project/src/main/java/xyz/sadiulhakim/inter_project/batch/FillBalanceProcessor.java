@@ -6,13 +6,14 @@ import xyz.sadiulhakim.inter_project.pojo.BalanceUpdate;
 import xyz.sadiulhakim.inter_project.pojo.BankTransaction;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 
 public class FillBalanceProcessor implements ItemProcessor<BankTransaction, BalanceUpdate> {
 
     private StepExecution stepExecution;
 
-    public static final String BALANCE_SO_FAR = "balanceSoFar";
+    // Running balance in cents (unscaled value of a numeric(10,2)), a long keeps it exact
+    public static final String BALANCE_SO_FAR = "balanceSoFarCents";
+    private static final int SCALE = 2;
 
     @Override
     public BalanceUpdate process(BankTransaction item) throws Exception {
@@ -20,23 +21,30 @@ public class FillBalanceProcessor implements ItemProcessor<BankTransaction, Bala
             throw new RuntimeException("Can not process item without accessing the step execution");
         }
 
-        BigDecimal newBalance = BigDecimal.valueOf(getLatestTransactionBalance())
-                .setScale(2, RoundingMode.HALF_UP)
-                .add(item.amount());
-        BalanceUpdate balanceUpdate = new BalanceUpdate(item.id(), newBalance);
-        stepExecution.getExecutionContext().putDouble(BALANCE_SO_FAR, newBalance.doubleValue());
-        return balanceUpdate;
+        long newBalance = Math.addExact(getLatestTransactionBalance(), toCents(item.amount()));
+        stepExecution.getExecutionContext().putLong(BALANCE_SO_FAR, newBalance);
+        return new BalanceUpdate(item.id(), toAmount(newBalance));
     }
 
-    public double getLatestTransactionBalance() {
+    // A partition worker starts from the balance its partitioner stored in the step execution context
+    public long getLatestTransactionBalance() {
         if (stepExecution == null) {
             throw new RuntimeException("Can not get the latest balance without accessing the step execution");
         }
         // If no balance is present, start from 0
-        return stepExecution.getExecutionContext().getDouble(BALANCE_SO_FAR, 0d);
+        return stepExecution.getExecutionContext().getLong(BALANCE_SO_FAR, 0L);
     }
 
     public void setStepExecution(StepExecution stepExecution) {
         this.stepExecution = stepExecution;
     }
+
+    // Amounts are numeric(10,2), setScale only adds zeros and throws if a value ever had more decimals
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(SCALE).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
 }
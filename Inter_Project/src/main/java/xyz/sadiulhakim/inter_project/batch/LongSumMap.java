@@ -0,0 +1,85 @@
+package xyz.sadiulhakim.inter_project.batch;
+
+import java.util.Arrays;
+
+// Open addressing map from a long key to a long sum, no boxing and no entry objects. Only used from one thread.
+class LongSumMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private long[] sums;
+    private int size;
+
+    LongSumMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        sums = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    // Adds value to the sum of key, a key seen for the first time starts from 0
+    void add(long key, long value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key " + key + " is reserved");
+        }
+
+        int slot = slot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            if (++size * 2 > keys.length) {
+                sums[slot] = value;
+                grow();
+                return;
+            }
+        }
+        sums[slot] = Math.addExact(sums[slot], value);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Keys in no particular order, callers sort what they need
+    long[] keys() {
+        long[] result = new long[size];
+        int n = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                result[n++] = key;
+            }
+        }
+        return result;
+    }
+
+    long get(long key) {
+        int slot = slot(key);
+        return keys[slot] == EMPTY ? 0 : sums[slot];
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        // Fibonacci hashing spreads small sequential keys over the whole table
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldSums = sums;
+        keys = new long[oldKeys.length << 1];
+        sums = new long[oldSums.length << 1];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                sums[slot] = oldSums[i];
+            }
+        }
+    }
+}
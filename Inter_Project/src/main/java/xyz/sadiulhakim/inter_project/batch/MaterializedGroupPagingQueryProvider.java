@@ -0,0 +1,117 @@
+package xyz.sadiulhakim.inter_project.batch;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.database.Order;
+import org.springframework.batch.item.database.support.PostgresPagingQueryProvider;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Paging query provider for GROUP BY queries that aggregates only once.
+ * <p>
+ * Paging a grouped query directly re-runs the aggregation over the whole table for every page. This provider instead
+ * materialises the grouped result into the table {@code tableName} before the step starts, with an index on the sort
+ * keys, and pages over that table by keyset ({@code where (k1, k2) > (:_k1, :_k2) order by k1, k2 limit n}). Every page is
+ * then an index range scan of page size rows.
+ * <p>
+ * It has to be registered as a listener of the step that owns the reader: {@link #beforeStep} builds the table and
+ * {@link #afterStep} drops it. A restart builds it again from the same data, so the saved sort key values still apply.
+ * The sort keys keep the order they are given in, unlike a HashMap they are never reordered.
+ */
+public class MaterializedGroupPagingQueryProvider extends PostgresPagingQueryProvider implements StepExecutionListener {
+
+    private final String tableName;
+    private final String groupSelectClause;
+    private final String groupFromClause;
+    private final String groupClause;
+    private final LinkedHashMap<String, Order> sortKeys;
+
+    private JdbcTemplate jdbcTemplate;
+    private boolean postgres;
+
+    public MaterializedGroupPagingQueryProvider(String tableName, String selectClause, String fromClause,
+                                                String groupClause, LinkedHashMap<String, Order> sortKeys) {
+        if (sortKeys.values().stream().distinct().count() != 1) {
+            throw new IllegalArgumentException("All sort keys of " + tableName + " must have the same order");
+        }
+
+        this.tableName = tableName;
+        this.groupSelectClause = selectClause;
+        this.groupFromClause = fromClause;
+        this.groupClause = groupClause;
+        this.sortKeys = new LinkedHashMap<>(sortKeys);
+
+        // The reader only ever sees the materialised table, rows are plain and need no GROUP BY
+        setSelectClause("*");
+        setFromClause(tableName);
+        setSortKeys(this.sortKeys);
+    }
+
+    @Override
+    public void init(DataSource dataSource) throws Exception {
+        super.init(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName()));
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        if (jdbcTemplate == null) {
+            throw new IllegalStateException("Query provider of " + tableName + " was not initialized by its reader");
+        }
+
+        // Unlogged on PostgreSQL, the table is rebuilt whenever it is needed so it never has to survive a crash
+        String create = (postgres ? "create unlogged table " : "create table ") + tableName + " as select "
+                + groupSelectClause + " from " + groupFromClause + " group by " + groupClause;
+        String index = "create index " + tableName + "_keys on " + tableName + " (" + String.join(", ", sortKeys.keySet()) + ")";
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("drop table if exists " + tableName);
+                statement.execute(create);
+                statement.execute(index);
+                if (postgres) {
+                    statement.execute("analyze " + tableName);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        jdbcTemplate.execute("drop table if exists " + tableName);
+        return null;
+    }
+
+    @Override
+    public Map<String, Order> getSortKeys() {
+        return sortKeys;
+    }
+
+    // The reader then binds the last row's sort key values by name, :_key
+    @Override
+    public boolean isUsingNamedParameters() {
+        return true;
+    }
+
+    // A row value comparison instead of (k1 > ?) or (k1 = ? and k2 > ?), the database seeks the index straight to it
+    @Override
+    public String generateRemainingPagesQuery(int pageSize) {
+        String columns = String.join(", ", sortKeys.keySet());
+        String parameters = String.join(", ", sortKeys.keySet().stream().map(key -> ":_" + key).toList());
+        boolean ascending = sortKeys.values().iterator().next() == Order.ASCENDING;
+        String orderBy = String.join(", ", sortKeys.keySet().stream().map(key -> key + (ascending ? " ASC" : " DESC")).toList());
+
+        return "SELECT * FROM " + tableName + " WHERE (" + columns + ") " + (ascending ? ">" : "<") + " (" + parameters + ")"
+                + " ORDER BY " + orderBy + " LIMIT " + pageSize;
+    }
+}
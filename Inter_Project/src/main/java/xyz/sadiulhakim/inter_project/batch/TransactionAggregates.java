@@ -0,0 +1,130 @@
+package xyz.sadiulhakim.inter_project.batch;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import xyz.sadiulhakim.inter_project.pojo.DailyBalance;
+import xyz.sadiulhakim.inter_project.pojo.MerchantMonthBalance;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Month-merchant and day-month sums of bank_transaction_yearly, both computed in one scan of the table.
+ * <p>
+ * The rows are streamed through a cursor and added to two {@link LongSumMap}s: merchants are numbered the first time
+ * they are seen and packed with the month into a long key, day and month are packed the same way. Amounts are summed
+ * in cents, so the totals are exact. The groups come out in the order of the paging readers' sort keys.
+ * <p>
+ * The scan runs the first time one of the results is asked for and is kept for the rest of the job execution.
+ */
+public class TransactionAggregates {
+
+    private static final String SCAN_QUERY = "select month, day, amount, merchant from bank_transaction_yearly";
+    private static final int FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private List<MerchantMonthBalance> merchantMonthBalances;
+    private List<DailyBalance> dailyBalances;
+
+    public TransactionAggregates(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    // Sorted by month, then merchant
+    public synchronized List<MerchantMonthBalance> merchantMonthBalances() {
+        scan();
+        return merchantMonthBalances;
+    }
+
+    // Sorted by month, then day
+    public synchronized List<DailyBalance> dailyBalances() {
+        scan();
+        return dailyBalances;
+    }
+
+    private void scan() {
+        if (merchantMonthBalances != null) {
+            return;
+        }
+
+        Map<String, Integer> merchantIds = new HashMap<>();
+        List<String> merchants = new ArrayList<>();
+        LongSumMap merchantMonthSums = new LongSumMap(1024);
+        LongSumMap dailySums = new LongSumMap(512);
+
+        // PostgreSQL only streams with a fetch size inside a transaction, otherwise it loads the whole result
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(SCAN_QUERY, (RowCallbackHandler) rs -> {
+            int month = rs.getInt(1);
+            int day = rs.getInt(2);
+            long cents = FillBalanceProcessor.toCents(rs.getBigDecimal(3));
+            String merchant = rs.getString(4);
+
+            Integer merchantId = merchantIds.get(merchant);
+            if (merchantId == null) {
+                merchantId = merchants.size();
+                merchantIds.put(merchant, merchantId);
+                merchants.add(merchant);
+            }
+
+            merchantMonthSums.add(pack(month, merchantId), cents);
+            dailySums.add(pack(month, day), cents);
+        }));
+
+        // Merchant ids in name order, so sorting the packed keys sorts by month, then merchant
+        String[] byName = merchants.toArray(String[]::new);
+        Arrays.sort(byName, Comparator.naturalOrder());
+        int[] rank = new int[byName.length];
+        for (int i = 0; i < byName.length; i++) {
+            rank[merchantIds.get(byName[i])] = i;
+        }
+
+        long[] merchantMonthKeys = merchantMonthSums.keys();
+        long[] rankedKeys = new long[merchantMonthKeys.length];
+        for (int i = 0; i < merchantMonthKeys.length; i++) {
+            rankedKeys[i] = pack(high(merchantMonthKeys[i]), rank[low(merchantMonthKeys[i])]);
+        }
+        Arrays.sort(rankedKeys);
+
+        List<MerchantMonthBalance> merchantMonth = new ArrayList<>(rankedKeys.length);
+        for (long rankedKey : rankedKeys) {
+            int month = high(rankedKey);
+            String merchant = byName[low(rankedKey)];
+            long cents = merchantMonthSums.get(pack(month, merchantIds.get(merchant)));
+            merchantMonth.add(new MerchantMonthBalance(month, merchant, FillBalanceProcessor.toAmount(cents)));
+        }
+
+        long[] dailyKeys = dailySums.keys();
+        Arrays.sort(dailyKeys);
+        List<DailyBalance> daily = new ArrayList<>(dailyKeys.length);
+        for (long dailyKey : dailyKeys) {
+            daily.add(new DailyBalance(low(dailyKey), high(dailyKey), FillBalanceProcessor.toAmount(dailySums.get(dailyKey))));
+        }
+
+        merchantMonthBalances = merchantMonth;
+        dailyBalances = daily;
+    }
+
+    private static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    private static int high(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int low(long key) {
+        return (int) key;
+    }
+}
@@ -7,7 +7,10 @@ import java.math.BigDecimal;
 public record BankTransaction(long id, int month, int day, int hour, int minute, BigDecimal amount, String merchant) {
 
     // Query and row mapper for obtaining bank transactions from the database
-    public static final String SELECT_ALL_QUERY = "select id, month, day, hour, minute, amount, merchant from bank_transaction_yearly";
+    // Ordered by id, ids follow the chronological order the transactions were inserted in
+    public static final String SELECT_ALL_QUERY = "select id, month, day, hour, minute, amount, merchant from bank_transaction_yearly order by id";
+    public static final String SELECT_RANGE_QUERY = "select id, month, day, hour, minute, amount, merchant from bank_transaction_yearly where id between ? and ? order by id";
+    public static final String LAST_BALANCE_QUERY = "select balance from bank_transaction_yearly order by id desc limit 1";
     public static final RowMapper<BankTransaction> ROW_MAPPER = (rs, rowNum) -> new BankTransaction(
             rs.getLong("id"),
             rs.getInt("month"),
@@ -1,13 +1,10 @@
 package xyz.sadiulhakim.inter_project.pojo;
 
 import org.springframework.batch.item.database.Order;
-import org.springframework.batch.item.database.PagingQueryProvider;
-import org.springframework.batch.item.database.support.PostgresPagingQueryProvider;
 import org.springframework.jdbc.core.RowMapper;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.LinkedHashMap;
 
 public record DailyBalance(
         int day,
@@ -22,17 +19,16 @@ public record DailyBalance(
             rs.getBigDecimal("balance")
     );
 
-    // Query provider to obtain daily balance aggregation from 'bank_transaction_yearly' table
-    public static PagingQueryProvider getQueryProvider() {
-        PostgresPagingQueryProvider queryProvider = new PostgresPagingQueryProvider();
-        queryProvider.setSelectClause("sum(amount) as balance, day, month");
-        queryProvider.setFromClause("bank_transaction_yearly");
-        queryProvider.setGroupClause("day, month");
+    // Columns of the daily balance aggregation over the 'bank_transaction_yearly' table
+    public static final String SELECT_CLAUSE = "sum(amount) as balance, day, month";
+    public static final String FROM_CLAUSE = "bank_transaction_yearly";
+    public static final String GROUP_CLAUSE = "day, month";
 
-        Map<String, Order> map = new HashMap<>();
-        map.put("month", Order.ASCENDING);
-        map.put("day", Order.ASCENDING);
-        queryProvider.setSortKeys(map);
-        return queryProvider;
+    // Kept in order, the result is sorted by month then day
+    public static LinkedHashMap<String, Order> sortKeys() {
+        LinkedHashMap<String, Order> sortKeys = new LinkedHashMap<>();
+        sortKeys.put("month", Order.ASCENDING);
+        sortKeys.put("day", Order.ASCENDING);
+        return sortKeys;
     }
 }
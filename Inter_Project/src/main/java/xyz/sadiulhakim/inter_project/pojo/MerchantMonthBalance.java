@@ -1,13 +1,10 @@
 package xyz.sadiulhakim.inter_project.pojo;
 
 import org.springframework.batch.item.database.Order;
-import org.springframework.batch.item.database.PagingQueryProvider;
-import org.springframework.batch.item.database.support.PostgresPagingQueryProvider;
 import org.springframework.jdbc.core.RowMapper;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.LinkedHashMap;
 
 public record MerchantMonthBalance(
         int month,
@@ -22,17 +19,16 @@ public record MerchantMonthBalance(
             rs.getBigDecimal("balance")
     );
 
-    // Query provider to obtain month-merchant aggregation from 'bank_transaction_yearly' table
-    public static PagingQueryProvider getQueryProvider() {
-        PostgresPagingQueryProvider queryProvider = new PostgresPagingQueryProvider();
-        queryProvider.setSelectClause("sum(amount) as balance, merchant, month");
-        queryProvider.setFromClause("bank_transaction_yearly");
-        queryProvider.setGroupClause("month, merchant");
+    // Columns of the month-merchant aggregation over the 'bank_transaction_yearly' table
+    public static final String SELECT_CLAUSE = "sum(amount) as balance, merchant, month";
+    public static final String FROM_CLAUSE = "bank_transaction_yearly";
+    public static final String GROUP_CLAUSE = "month, merchant";
 
-        Map<String, Order> map = new HashMap<>();
-        map.put("month", Order.ASCENDING);
-        map.put("merchant", Order.ASCENDING);
-        queryProvider.setSortKeys(map);
-        return queryProvider;
+    // Kept in order, the result is sorted by month then merchant
+    public static LinkedHashMap<String, Order> sortKeys() {
+        LinkedHashMap<String, Order> sortKeys = new LinkedHashMap<>();
+        sortKeys.put("month", Order.ASCENDING);
+        sortKeys.put("merchant", Order.ASCENDING);
+        return sortKeys;
     }
 }
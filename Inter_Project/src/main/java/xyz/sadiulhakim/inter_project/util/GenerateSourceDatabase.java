@@ -1,23 +1,56 @@
 package xyz.sadiulhakim.inter_project.util;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
-import xyz.sadiulhakim.inter_project.pojo.BankTransaction;
+import xyz.sadiulhakim.batch_commons.source.BulkRowWriter;
+import xyz.sadiulhakim.batch_commons.source.GenerationProgress;
+import xyz.sadiulhakim.batch_commons.source.ZipfSampler;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fills bank_transaction_yearly with random transactions for load tests.
+ * <p>
+ * Size, merchants, months and seed are configurable under {@code source.generate.*}. The same seed always gives the
+ * same table, whatever the number of threads. Every day of the month range is generated by its own task: its rows are
+ * sorted by time and get ids from a fixed range, so ids stay in chronological order although the days are loaded in
+ * parallel. Rows are streamed with COPY on PostgreSQL and multi-row inserts elsewhere, see {@link BulkRowWriter}.
+ * <p>
+ * {@code merchant-skew} is the exponent of a Zipf distribution over the merchants, 0 picks them uniformly and around 1
+ * gives a few hot merchants most of the transactions.
+ */
 @Component
 public class GenerateSourceDatabase {
 
     private final JdbcTemplate jdbcTemplate;
 
     // Number of records to generate
-    private static final int TARGET_RECORD_NUM = 300;
+    @Value("${source.generate.records:300}")
+    private long recordCount;
     // Number of unique merchants to be used in generated records
-    private static final int TARGET_UNIQUE_MERCHANT_NUM = 40;
+    @Value("${source.generate.merchants:40}")
+    private int merchantCount;
+    @Value("${source.generate.merchant-skew:0}")
+    private double merchantSkew;
+    // Months the transactions are spread over, 1-indexed and inclusive
+    @Value("${source.generate.first-month:1}")
+    private int firstMonth;
+    @Value("${source.generate.last-month:12}")
+    private int lastMonth;
+    // -1 picks a new seed every time, it is printed so a run can be repeated
+    @Value("${source.generate.seed:-1}")
+    private long seed;
+    // 0 uses one thread per core
+    @Value("${source.generate.threads:0}")
+    private int threads;
+
     // Key is month number, 1-indexed, i.e. 1 is January, 12 is December; value is the number of days
     private static final Map<Integer, Integer> DAYS_IN_MONTH_MAP = new ConcurrentHashMap<>();
 
@@ -36,76 +69,120 @@ public class GenerateSourceDatabase {
         DAYS_IN_MONTH_MAP.put(12, 31);
     }
 
+    private static final String[] COLUMNS = {"id", "month", "day", "hour", "minute", "amount", "merchant"};
+
     public GenerateSourceDatabase(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
     // Main method re-creating table and generating records in the database
     public void generate() {
+        if (firstMonth < 1 || lastMonth > 12 || firstMonth > lastMonth) {
+            throw new IllegalArgumentException("Invalid month range " + firstMonth + ".." + lastMonth);
+        }
 
         // Initialize the schema
         SourceManagementUtils.initializeEmptyDatabase(jdbcTemplate);
 
-        List<BankTransaction> recordsToInsert = new ArrayList<>(TARGET_RECORD_NUM);
-        Random random = new Random();
-        String[] merchants = generateMerchants();
-        for (int i = 0; i < TARGET_RECORD_NUM; i++) {
-            recordsToInsert.add(generateRecord(random, merchants));
+        long runSeed = seed == -1 ? new Random().nextLong() : seed;
+        SplittableRandom random = new SplittableRandom(runSeed);
+        String[] merchants = generateMerchants(random);
+        ZipfSampler merchantSampler = new ZipfSampler(merchantCount, merchantSkew);
+
+        List<int[]> days = new ArrayList<>();
+        for (int month = firstMonth; month <= lastMonth; month++) {
+            for (int day = 1; day <= DAYS_IN_MONTH_MAP.get(month); day++) {
+                days.add(new int[]{month, day});
+            }
         }
 
-        // Sort random records chronologically
-        recordsToInsert.sort((t1, t2) -> {
-            if (t1.month() < t2.month()) {
-                return -1;
-            } else if (t1.month() > t2.month()) {
-                return 1;
-            } else if (t1.day() < t2.day()) {
-                return -1;
-            } else if (t1.day() > t2.day()) {
-                return 1;
-            } else if (t1.hour() < t2.hour()) {
-                return -1;
-            } else if (t1.hour() > t2.hour()) {
-                return 1;
-            } else if (t1.minute() < t2.minute()) {
-                return -1;
-            } else if (t1.minute() > t2.minute()) {
-                return 1;
-            } else {
-                return t1.amount().compareTo(t2.amount());
+        int threadCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        GenerationProgress progress = new GenerationProgress(recordCount, "transactions");
+        try (ExecutorService executor = Executors.newFixedThreadPool(threadCount)) {
+            List<Future<?>> futures = new ArrayList<>(days.size());
+            for (int i = 0; i < days.size(); i++) {
+                // Day i owns the ids (firstId, lastId], the rows are spread evenly over the days
+                long firstId = recordCount * i / days.size();
+                long lastId = recordCount * (i + 1) / days.size();
+                int[] day = days.get(i);
+                long daySeed = runSeed + (i + 1) * 0x9E3779B97F4A7C15L;
+                futures.add(executor.submit(() -> {
+                    generateDay(day[0], day[1], firstId, lastId, new SplittableRandom(daySeed), merchants, merchantSampler);
+                    progress.add(lastId - firstId);
+                    return null;
+                }));
             }
-        });
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating transactions", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not generate transactions", e.getCause());
+        }
 
-        for (BankTransaction transaction : recordsToInsert) {
-            // Insert records in the db, relying on auto-increment (serial) for id
-            SourceManagementUtils.insertBankTransaction(transaction, jdbcTemplate);
+        // The ids were given explicitly, move the serial sequence past them so later inserts still work
+        if (isPostgres()) {
+            jdbcTemplate.execute("select setval(pg_get_serial_sequence('bank_transaction_yearly', 'id'), " +
+                    "coalesce((select max(id) from bank_transaction_yearly), 0) + 1, false)");
         }
 
         // Print to console the success message
-        System.out.println("Input source table with " + TARGET_RECORD_NUM + " records is successfully initialized");
+        double seconds = progress.seconds();
+        System.out.printf("Input source table with %d records is successfully initialized in %.1f s (%.0f rows/s, seed %d)%n",
+                recordCount, seconds, recordCount / seconds, runSeed);
     }
 
-    // Generate random transaction record using pre-calculated list of merchants to use
-    public static BankTransaction generateRecord(Random random, String[] merchants) {
-        int month = random.nextInt(12) + 1;
-        int day = random.nextInt(DAYS_IN_MONTH_MAP.get(month)) + 1;
-        int hour = random.nextInt(24);
-        int minute = random.nextInt(60);
-        double doubleAmount = ((double) random.nextInt(100000)) / 100;
-        if (random.nextBoolean()) {
-            doubleAmount *= -1;
+    // Generates the rows of one day, sorted chronologically, and writes them with ids firstId + 1 .. lastId
+    private void generateDay(int month, int day, long firstId, long lastId, SplittableRandom random,
+                             String[] merchants, ZipfSampler merchantSampler) {
+        int count = (int) (lastId - firstId);
+
+        // Minute of the day, amount and merchant packed into one long, sorting the longs sorts by time then amount
+        long[] rows = new long[count];
+        for (int i = 0; i < count; i++) {
+            long minuteOfDay = random.nextInt(24 * 60);
+            long cents = random.nextInt(100000);
+            if (random.nextBoolean()) {
+                cents = -cents;
+            }
+            rows[i] = minuteOfDay << 52 | (cents + AMOUNT_OFFSET) << 34 | merchantSampler.sample(random);
         }
-        BigDecimal amount = new BigDecimal(doubleAmount).setScale(2, RoundingMode.HALF_UP);
-        String merchant = merchants[random.nextInt(merchants.length)];
+        Arrays.sort(rows);
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (BulkRowWriter writer = new BulkRowWriter(connection, "bank_transaction_yearly", COLUMNS)) {
+                for (int i = 0; i < count; i++) {
+                    long row = rows[i];
+                    int minuteOfDay = (int) (row >>> 52);
+                    writer.value(firstId + i + 1);
+                    writer.value(month);
+                    writer.value(day);
+                    writer.value(minuteOfDay / 60);
+                    writer.value(minuteOfDay % 60);
+                    writer.cents(((row >>> 34) & 0x3FFFF) - AMOUNT_OFFSET);
+                    writer.value(merchants[(int) (row & 0x3FFFFFFFFL)]);
+                    writer.endRow();
+                }
+            }
+            return null;
+        });
+    }
+
+    // Amounts go from -999.99 to 999.99, shifted to be positive inside the packed row
+    private static final long AMOUNT_OFFSET = 100000;
 
-        return new BankTransaction(-1, month, day, hour, minute, amount, merchant);
+    private boolean isPostgres() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName())));
     }
 
-    // Return array of merchant names to be used
-    private static String[] generateMerchants() {
-        String[] merchantsArray = new String[TARGET_UNIQUE_MERCHANT_NUM];
-        for (int i = 0; i < TARGET_UNIQUE_MERCHANT_NUM; i++) {
-            merchantsArray[i] = UUID.randomUUID().toString();
+    // Return array of merchant names to be used, derived from the seed
+    private String[] generateMerchants(SplittableRandom random) {
+        String[] merchantsArray = new String[merchantCount];
+        for (int i = 0; i < merchantCount; i++) {
+            merchantsArray[i] = new UUID(random.nextLong(), random.nextLong()).toString();
         }
         return merchantsArray;
     }
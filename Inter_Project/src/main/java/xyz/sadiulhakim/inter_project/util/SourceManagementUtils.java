@@ -1,7 +1,6 @@
 package xyz.sadiulhakim.inter_project.util;
 
 import org.springframework.jdbc.core.JdbcTemplate;
-import xyz.sadiulhakim.inter_project.pojo.BankTransaction;
 
 import javax.sql.DataSource;
 
@@ -71,13 +70,4 @@ public class SourceManagementUtils {
                 "merchant varchar(36) not null" +
                 ")");
     }
-
-    // Inserts new transaction in the database. Please note that the 'id' property is ignored,
-    // method relies on the database to autofill it (serial / auto-increment)
-    public static void insertBankTransaction(BankTransaction transaction, JdbcTemplate jdbcTemplate) {
-        jdbcTemplate.update("insert into bank_transaction_yearly (month, day, hour, minute, amount, merchant) " +
-                        "values (?, ?, ?, ?, ?, ?)",
-                transaction.month(), transaction.day(), transaction.hour(),
-                transaction.minute(), transaction.amount(), transaction.merchant());
-    }
 }